@@ -0,0 +1,103 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates players typing arguments of "/bench warp" one character at a time. Every invocation completes the next
+ * keystroke, so consecutive calls share the same completer and a growing prefix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionBenchmark {
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({"100", "1000"})
+    public int completions;
+
+    @Param({"0", "5000"})
+    public long cacheTime;
+
+    @Param({"1", "50"})
+    public int senders;
+
+    private HeadlessEnvironment environment;
+    private CommandSender[] senderPool;
+    private Command command;
+    private String[][] keystrokes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        environment = new HeadlessEnvironment();
+        senderPool = new CommandSender[senders];
+        for (int i = 0; i < senders; i++) {
+            senderPool[i] = environment.createSender("player" + i);
+        }
+
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(completions);
+        for (int i = 0; i < completions; i++) {
+            names.add(randomWord(random, 4 + random.nextInt(8)));
+        }
+        List<String> commandNames = new ArrayList<>();
+        commandNames.add("bench");
+        commandNames.add("bench.warp");
+        environment.framework.registerCommands(Handlers.commands(commandNames));
+        environment.framework.registerCommands(Handlers.completer("bench.warp", cacheTime, names));
+        command = environment.commandMap.getCommand("bench");
+
+        List<String[]> strokes = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            String word = names.get(random.nextInt(names.size()));
+            for (int length = 0; length <= word.length(); length++) {
+                strokes.add(new String[]{"warp", word.substring(0, length)});
+            }
+        }
+        keystrokes = strokes.toArray(new String[strokes.size()][]);
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public List<String> complete() {
+        next = next + 1 < keystrokes.length ? next + 1 : 0;
+        return command.tabComplete(senderPool[next % senders], "bench", keystrokes[next]);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches random registered commands through {@link de.keyle.command.framework.CommandFramework#handleCommand}.
+ * A depth of 1 registers "bench.cN", higher depths nest the commands below intermediate subcommands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int commands;
+
+    @Param({"1", "5"})
+    public int depth;
+
+    private HeadlessEnvironment environment;
+    private CommandSender sender;
+    private Command command;
+    private String[][] samples;
+    private int next;
+
+    @Setup
+    public void setup() {
+        environment = new HeadlessEnvironment();
+        sender = environment.createSender("bench");
+
+        StringBuilder prefix = new StringBuilder("bench");
+        List<String> path = new ArrayList<>();
+        for (int i = 1; i < depth; i++) {
+            prefix.append(".level").append(i);
+            path.add("level" + i);
+        }
+        List<String> names = new ArrayList<>(commands);
+        for (int i = 0; i < commands; i++) {
+            names.add(prefix + ".c" + i);
+        }
+        environment.framework.registerCommands(Handlers.commands(names));
+        command = environment.commandMap.getCommand("bench");
+
+        Random random = new Random(42);
+        samples = new String[SAMPLES][];
+        for (int i = 0; i < SAMPLES; i++) {
+            List<String> args = new ArrayList<>(path);
+            args.add("C" + random.nextInt(commands));
+            args.add("argument");
+            samples[i] = args.toArray(new String[args.size()]);
+        }
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        next = (next + 1) & (SAMPLES - 1);
+        return environment.framework.handleCommand(sender, "bench", command, samples[next]);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import de.keyle.command.framework.Command;
+import de.keyle.command.framework.CommandArgs;
+import de.keyle.command.framework.Completer;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FixedValue;
+import net.bytebuddy.implementation.StubMethod;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates handler classes with any number of annotated methods, since registries with thousands of commands can not
+ * be written by hand.
+ */
+public final class Handlers {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private Handlers() {
+    }
+
+    /**
+     * Creates a handler with one empty {@link Command} method per name
+     *
+     * @param names The dotted command names
+     * @return A new handler instance
+     */
+    public static Object commands(List<String> names) {
+        DynamicType.Builder<Object> builder = newHandler();
+        for (int i = 0; i < names.size(); i++) {
+            builder = builder.defineMethod("command" + i, void.class, Visibility.PUBLIC)
+                    .withParameters(CommandArgs.class)
+                    .intercept(StubMethod.INSTANCE)
+                    .annotateMethod(AnnotationDescription.Builder.ofType(Command.class).define("name", names.get(i)).build());
+        }
+        return instantiate(builder);
+    }
+
+    /**
+     * Creates a handler with a single {@link Completer} method that always returns the given completions
+     *
+     * @param name        The dotted command name
+     * @param cacheTime   The cache time of the completer
+     * @param completions The completions
+     * @return A new handler instance
+     */
+    public static Object completer(String name, long cacheTime, List<String> completions) {
+        DynamicType.Builder<Object> builder = newHandler()
+                .defineMethod("complete", List.class, Visibility.PUBLIC)
+                .withParameters(CommandArgs.class)
+                .intercept(FixedValue.reference(completions))
+                .annotateMethod(AnnotationDescription.Builder.ofType(Completer.class).define("name", name).define("cacheTime", cacheTime).build());
+        return instantiate(builder);
+    }
+
+    private static DynamicType.Builder<Object> newHandler() {
+        return new ByteBuddy()
+                .subclass(Object.class)
+                .name(Handlers.class.getPackage().getName() + ".GeneratedHandler" + COUNTER.incrementAndGet())
+                .modifiers(Visibility.PUBLIC);
+    }
+
+    private static Object instantiate(DynamicType.Builder<Object> builder) {
+        try {
+            return builder.make()
+                    .load(Handlers.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded()
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create handler", e);
+        }
+    }
+}
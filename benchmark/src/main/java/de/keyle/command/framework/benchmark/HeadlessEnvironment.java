@@ -0,0 +1,142 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import de.keyle.command.framework.CommandFramework;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.SimplePluginManager;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+/**
+ * A server, plugin and command map that run without Minecraft. Everything the framework does not use is stubbed with
+ * default values.
+ */
+public class HeadlessEnvironment {
+    private static final Logger LOGGER = Logger.getLogger("CommandFramework-Benchmark");
+
+    public final Server server;
+    public final SimpleCommandMap commandMap;
+    public final SimplePluginManager pluginManager;
+    public final Plugin plugin;
+    public final CommandFramework framework;
+
+    public HeadlessEnvironment() {
+        server = stub(Server.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getPluginManager":
+                        return pluginManager;
+                    case "getOnlinePlayers":
+                    case "getWorlds":
+                        return Collections.emptyList();
+                    case "isPrimaryThread":
+                        return true;
+                    case "getLogger":
+                        return LOGGER;
+                    case "getName":
+                        return "Headless";
+                }
+                return defaultValue(proxy, method, args);
+            }
+        });
+        commandMap = new SimpleCommandMap(server);
+        pluginManager = new SimplePluginManager(server, commandMap);
+        plugin = stub(Plugin.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getServer":
+                        return server;
+                    case "getName":
+                        return "Benchmark";
+                    case "isEnabled":
+                        return true;
+                    case "getLogger":
+                        return LOGGER;
+                    case "getDescription":
+                        return new PluginDescriptionFile("Benchmark", "0.0.1", HeadlessEnvironment.class.getName());
+                    case "onCommand":
+                        return framework.handleCommand((CommandSender) args[0], (String) args[2], (org.bukkit.command.Command) args[1], (String[]) args[3]);
+                }
+                return defaultValue(proxy, method, args);
+            }
+        });
+        framework = new CommandFramework(plugin);
+    }
+
+    /**
+     * Creates a sender that has all permissions and discards all messages
+     *
+     * @param name The name of the sender
+     * @return The sender
+     */
+    public CommandSender createSender(final String name) {
+        return stub(CommandSender.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getName":
+                        return name;
+                    case "getServer":
+                        return server;
+                    case "hasPermission":
+                    case "isPermissionSet":
+                    case "isOp":
+                        return true;
+                }
+                return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(HeadlessEnvironment.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "Stub";
+        }
+        Class<?> type = method.getReturnType();
+        if (type.isPrimitive() && type != void.class) {
+            // the element of a new primitive array is the default value of the type
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import de.keyle.command.framework.CommandArgs;
+import de.keyle.command.framework.CommandDescriptor;
+import de.keyle.command.framework.CommandInvoker;
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the invokers of registered command handlers. "bound" uses the invokers of the framework, "shared" keeps
+ * the method handle in an instance field of one shared invoker class and "reflective" calls {@link Method#invoke}.
+ * The handlers are called in rotation, so more than two handlers make a call site with a shared invoker class
+ * megamorphic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBenchmark {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, CommandArgs.class);
+
+    @Param({"1", "8"})
+    public int handlers;
+
+    @Param({"bound", "shared", "reflective"})
+    public String invoker;
+
+    private CommandInvoker[] invokers;
+    private CommandArgs args;
+    private int next;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        HeadlessEnvironment environment = new HeadlessEnvironment();
+        CommandSender sender = environment.createSender("bench");
+        List<String> names = new ArrayList<>(handlers);
+        for (int i = 0; i < handlers; i++) {
+            names.add("invoke.c" + i);
+        }
+        Object handler = Handlers.commands(names);
+        environment.framework.registerCommands(handler);
+
+        invokers = new CommandInvoker[handlers];
+        for (int i = 0; i < handlers; i++) {
+            CommandDescriptor command = environment.framework.getCommand(names.get(i));
+            invokers[i] = create(command, handler);
+        }
+        args = new CommandArgs(sender, environment.commandMap.getCommand("invoke"), Collections.<String>emptyList()) {
+        };
+    }
+
+    private CommandInvoker create(CommandDescriptor command, final Object handler) throws IllegalAccessException {
+        final Method method = command.getMethod();
+        switch (invoker) {
+            case "shared":
+                return new SharedHandleInvoker(MethodHandles.publicLookup().unreflect(method).bindTo(handler).asType(INVOKER_TYPE));
+            case "reflective":
+                return new CommandInvoker() {
+                    @Override
+                    public Object invoke(CommandArgs args) throws Throwable {
+                        return method.invoke(handler, args);
+                    }
+                };
+            default:
+                return command.getInvoker();
+        }
+    }
+
+    @Benchmark
+    public Object invoke() throws Throwable {
+        next = (next + 1) & (handlers - 1);
+        return invokers[next].invoke(args);
+    }
+
+    private static final class SharedHandleInvoker implements CommandInvoker {
+        private final MethodHandle handle;
+
+        SharedHandleInvoker(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object invoke(CommandArgs args) throws Throwable {
+            return (Object) handle.invokeExact(args);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import de.keyle.command.framework.CommandFramework;
+import de.keyle.command.framework.CommandRecorder;
+import de.keyle.command.framework.InMemoryPlatform;
+import de.keyle.command.framework.InMemorySender;
+import de.keyle.command.framework.LatencyHistogram;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a command log recorded with {@link CommandFramework#startRecording(java.io.File)} or a synthetic command
+ * distribution from many simulated senders and threads against a framework on the {@link InMemoryPlatform}.
+ * Commands go through {@link CommandFramework#handleCommand} and tab completions through
+ * {@link de.keyle.command.framework.BukkitCompleter#onTabComplete} as on a server, at full speed.
+ * <pre>
+ * java -cp benchmark/target/benchmarks.jar de.keyle.command.framework.benchmark.LoadGenerator [options]
+ *   --log &lt;file&gt;        replay a recorded log instead of synthetic commands
+ *   --handler &lt;class&gt;   register a handler class with a public no-argument constructor, can be repeated
+ *   --commands &lt;n&gt;      number of synthetic commands (default 1000)
+ *   --completions &lt;%&gt;   percentage of synthetic tab completions (default 20)
+ *   --senders &lt;n&gt;       number of simulated senders (default 100)
+ *   --threads &lt;n&gt;       number of threads (default: available processors)
+ *   --warmup &lt;s&gt;        warmup time in seconds (default 5)
+ *   --duration &lt;s&gt;      measurement time in seconds (default 10)
+ * </pre>
+ */
+public class LoadGenerator {
+    private static final int SYNTHETIC_OPERATIONS = 1 << 16;
+
+    private final InMemoryPlatform platform = new InMemoryPlatform();
+    private final CommandFramework framework = new CommandFramework(null, platform);
+    private final List<Operation> operations = new ArrayList<>();
+    private CommandSender[] senders;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, List<String>> options = parseOptions(args);
+        LoadGenerator generator = new LoadGenerator();
+        generator.createSenders(intOption(options, "senders", 100));
+        for (String handler : options.getOrDefault("handler", Collections.<String>emptyList())) {
+            generator.framework.registerCommands(Class.forName(handler).getConstructor().newInstance());
+        }
+        if (options.containsKey("log")) {
+            generator.loadLog(options.get("log").get(0));
+        } else {
+            generator.generate(intOption(options, "commands", 1000), intOption(options, "completions", 20));
+        }
+        if (generator.operations.isEmpty()) {
+            System.out.println("Nothing to replay");
+            return;
+        }
+        int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+        System.out.println("Replaying " + generator.operations.size() + " operations from " + generator.senders.length + " senders on " + threads + " threads");
+        generator.run(threads, intOption(options, "warmup", 5));
+        generator.run(threads, intOption(options, "duration", 10)).print();
+        generator.framework.shutdown();
+    }
+
+    private static Map<String, List<String>> parseOptions(String[] args) {
+        Map<String, List<String>> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value but got " + args[i]);
+            }
+            options.computeIfAbsent(args[i].substring(2), key -> new ArrayList<>()).add(args[++i]);
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, List<String>> options, String name, int def) {
+        List<String> values = options.get(name);
+        return values != null ? Integer.parseInt(values.get(0)) : def;
+    }
+
+    private void createSenders(int count) {
+        senders = new CommandSender[count];
+        for (int i = 0; i < count; i++) {
+            InMemorySender sender = new InMemorySender("sender" + i);
+            sender.setOp(true);
+            sender.setRecordMessages(false);
+            senders[i] = sender;
+        }
+    }
+
+    private void loadLog(String file) throws IOException {
+        int skipped = 0;
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            CommandRecorder.Entry entry;
+            try {
+                entry = CommandRecorder.Entry.parse(line);
+            } catch (IllegalArgumentException e) {
+                skipped++;
+                continue;
+            }
+            Command command = platform.getCommand(entry.getLabel().toLowerCase());
+            if (command == null) {
+                skipped++;
+                continue;
+            }
+            // the same recorded sender is always replayed by the same simulated sender, e.g. for cooldowns
+            CommandSender sender = senders[Math.floorMod(entry.getSender().hashCode(), senders.length)];
+            operations.add(new Operation(entry.getType() == CommandRecorder.Type.COMPLETE, sender, command, entry.getLabel(), entry.getArgs()));
+        }
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " malformed lines or lines without a registered command");
+        }
+    }
+
+    /**
+     * Registers "load.cN" commands and picks them with a Zipf distribution, so a few commands are used most of the
+     * time as on a real server
+     */
+    private void generate(int commands, int completionPercentage) {
+        List<String> names = new ArrayList<>(commands);
+        for (int i = 0; i < commands; i++) {
+            names.add("load.c" + i);
+        }
+        framework.registerCommands(Handlers.commands(names));
+        Command command = platform.getCommand("load");
+
+        double[] cumulative = new double[commands];
+        double sum = 0;
+        for (int i = 0; i < commands; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < SYNTHETIC_OPERATIONS; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            String name = "c" + (index < 0 ? -index - 1 : index);
+            CommandSender sender = senders[random.nextInt(senders.length)];
+            if (random.nextInt(100) < completionPercentage) {
+                operations.add(new Operation(true, sender, command, "load", new String[]{name.substring(0, 1 + random.nextInt(name.length()))}));
+            } else {
+                operations.add(new Operation(false, sender, command, "load", new String[]{name, "argument"}));
+            }
+        }
+    }
+
+    private Result run(int threads, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(operations.size() / threads * i, end);
+            workers[i].start();
+        }
+        Result result = new Result(seconds);
+        for (Worker worker : workers) {
+            worker.join();
+            result.add(worker);
+        }
+        return result;
+    }
+
+    private static final class Operation {
+        private final boolean completion;
+        private final CommandSender sender;
+        private final Command command;
+        private final String label;
+        private final String[] args;
+
+        Operation(boolean completion, CommandSender sender, Command command, String label, String[] args) {
+            this.completion = completion;
+            this.sender = sender;
+            this.command = command;
+            this.label = label;
+            this.args = args;
+        }
+    }
+
+    private final class Worker extends Thread {
+        private final long end;
+        private final LatencyHistogram commands = new LatencyHistogram();
+        private final LatencyHistogram completions = new LatencyHistogram();
+        private int next;
+        private long errors;
+        private long allocated;
+
+        Worker(int start, long end) {
+            super("LoadGenerator-Worker");
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            long allocatedBefore = allocatedBytes();
+            long now = System.nanoTime();
+            while (now < end) {
+                Operation operation = operations.get(next);
+                if (++next == operations.size()) {
+                    next = 0;
+                }
+                try {
+                    if (operation.completion) {
+                        operation.command.tabComplete(operation.sender, operation.label, operation.args);
+                    } else {
+                        operation.command.execute(operation.sender, operation.label, operation.args);
+                    }
+                } catch (RuntimeException e) {
+                    errors++;
+                }
+                long finished = System.nanoTime();
+                (operation.completion ? completions : commands).record(finished - now);
+                now = finished;
+            }
+            allocated = allocatedBytes() - allocatedBefore;
+        }
+
+        private long allocatedBytes() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(getId());
+            }
+            return 0;
+        }
+    }
+
+    private static final class Result {
+        private final int seconds;
+        private final LatencyHistogram commands = new LatencyHistogram();
+        private final LatencyHistogram completions = new LatencyHistogram();
+        private long errors;
+        private long allocated;
+
+        Result(int seconds) {
+            this.seconds = seconds;
+        }
+
+        void add(Worker worker) {
+            commands.add(worker.commands);
+            completions.add(worker.completions);
+            errors += worker.errors;
+            allocated += worker.allocated;
+        }
+
+        void print() {
+            long operations = commands.getCount() + completions.getCount();
+            System.out.printf("Throughput:  %.0f ops/s (%d operations, %d errors)%n", (double) operations / seconds, operations, errors);
+            print("Commands:   ", commands);
+            print("Completions:", completions);
+            System.out.printf("Allocation:  %.0f bytes/op%n", operations == 0 ? 0 : (double) allocated / operations);
+        }
+
+        private static void print(String name, LatencyHistogram latency) {
+            if (latency.getCount() == 0) {
+                return;
+            }
+            System.out.printf("%s %d ops, p50 %.2fus, p90 %.2fus, p99 %.2fus, p99.9 %.2fus, max %.2fus%n",
+                    name,
+                    latency.getCount(),
+                    latency.getValueAtPercentile(50) / 1e3,
+                    latency.getValueAtPercentile(90) / 1e3,
+                    latency.getValueAtPercentile(99) / 1e3,
+                    latency.getValueAtPercentile(99.9) / 1e3,
+                    latency.getMax() / 1e3);
+        }
+    }
+}
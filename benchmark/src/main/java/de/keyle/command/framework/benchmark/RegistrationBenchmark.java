@@ -0,0 +1,78 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link de.keyle.command.framework.CommandFramework#registerCommands(Object)} for a single large handler
+ * class on a fresh server. Every measured batch registers into servers that are created before the batch, so the
+ * setup is not part of the measured time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = RegistrationBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = RegistrationBenchmark.BATCH_SIZE)
+@OperationsPerInvocation(RegistrationBenchmark.BATCH_SIZE)
+@Fork(1)
+public class RegistrationBenchmark {
+    static final int BATCH_SIZE = 50;
+
+    @Param({"10", "100", "1000"})
+    public int methods;
+
+    @Param({"1", "10"})
+    public int roots;
+
+    private Object handler;
+    private HeadlessEnvironment[] environments;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createHandler() {
+        List<String> names = new ArrayList<>(methods);
+        for (int i = 0; i < methods; i++) {
+            names.add("root" + (i % roots) + ".sub" + i);
+        }
+        handler = Handlers.commands(names);
+    }
+
+    @Setup(Level.Iteration)
+    public void createEnvironments() {
+        environments = new HeadlessEnvironment[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            environments[i] = new HeadlessEnvironment();
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public Object register() {
+        HeadlessEnvironment environment = environments[next++];
+        environment.framework.registerCommands(handler);
+        return environment.framework;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts a single command argument into a parameter of a {@link Command} method.
+ *
+ * @param <T> The type of the parameter
+ */
+public interface ArgumentResolver<T> {
+    /**
+     * Resolves an argument. Invalid input has to be reported by returning null instead of throwing an exception.
+     *
+     * @param sender The sender of the command
+     * @param input  The argument
+     * @return The resolved value or null if the argument is invalid
+     */
+    T resolve(CommandSender sender, String input);
+
+    /**
+     * Gets the tab completions for an argument that is currently typed
+     *
+     * @param sender The sender of the command
+     * @param prefix The part of the argument that is already typed
+     * @return The matching completions
+     */
+    default List<String> complete(CommandSender sender, String prefix) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.util.StringUtil;
+
+import java.util.*;
+
+class ArgumentResolvers {
+    private final Map<Class<?>, ArgumentResolver<?>> resolvers = new HashMap<>();
+
+    ArgumentResolvers(Platform platform) {
+        register(String.class, (sender, input) -> input);
+        register(Integer.class, (sender, input) -> Parsers.isInt(input) ? Integer.valueOf(input) : null);
+        register(Long.class, (sender, input) -> Parsers.isLong(input) ? Long.valueOf(input) : null);
+        register(Double.class, (sender, input) -> Parsers.isDouble(input) ? Double.valueOf(input) : null);
+        register(Float.class, (sender, input) -> Parsers.isFloat(input) ? Float.valueOf(input) : null);
+        register(Boolean.class, new BooleanResolver());
+        register(Player.class, new PlayerResolver(platform));
+        register(World.class, new WorldResolver(platform));
+    }
+
+    public <T> void register(Class<T> type, ArgumentResolver<T> resolver) {
+        resolvers.put(type, resolver);
+    }
+
+    /**
+     * Gets the resolver for a parameter type. Resolvers for enums are created on demand.
+     *
+     * @param type The parameter type
+     * @return The resolver or null if the type is not supported
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArgumentResolver<?> get(Class<?> type) {
+        ArgumentResolver<?> resolver = resolvers.get(type);
+        if (resolver == null && type.isEnum()) {
+            resolver = new EnumResolver(type);
+            resolvers.put(type, resolver);
+        }
+        return resolver;
+    }
+
+    static class BooleanResolver implements ArgumentResolver<Boolean> {
+        private static final List<String> VALUES = Collections.unmodifiableList(Arrays.asList("true", "false"));
+
+        @Override
+        public Boolean resolve(CommandSender sender, String input) {
+            return Parsers.isBoolean(input) ? Parsers.parseBoolean(input) : null;
+        }
+
+        @Override
+        public List<String> complete(CommandSender sender, String prefix) {
+            return StringUtil.copyPartialMatches(prefix, VALUES, new ArrayList<String>(2));
+        }
+    }
+
+    static class PlayerResolver implements ArgumentResolver<Player> {
+        private final Platform platform;
+
+        PlayerResolver(Platform platform) {
+            this.platform = platform;
+        }
+
+        @Override
+        public Player resolve(CommandSender sender, String input) {
+            return platform.getPlayer(input);
+        }
+
+        @Override
+        public List<String> complete(CommandSender sender, String prefix) {
+            List<String> names = new ArrayList<>();
+            for (Player player : platform.getOnlinePlayers()) {
+                if (StringUtil.startsWithIgnoreCase(player.getName(), prefix)) {
+                    names.add(player.getName());
+                }
+            }
+            return names;
+        }
+    }
+
+    static class WorldResolver implements ArgumentResolver<World> {
+        private final Platform platform;
+
+        WorldResolver(Platform platform) {
+            this.platform = platform;
+        }
+
+        @Override
+        public World resolve(CommandSender sender, String input) {
+            return platform.getWorld(input);
+        }
+
+        @Override
+        public List<String> complete(CommandSender sender, String prefix) {
+            List<String> names = new ArrayList<>();
+            for (World world : platform.getWorlds()) {
+                if (StringUtil.startsWithIgnoreCase(world.getName(), prefix)) {
+                    names.add(world.getName());
+                }
+            }
+            return names;
+        }
+    }
+
+    static class EnumResolver<T extends Enum<T>> implements ArgumentResolver<T> {
+        private final Map<String, T> constants = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final List<String> names = new ArrayList<>();
+
+        EnumResolver(Class<T> type) {
+            for (T constant : type.getEnumConstants()) {
+                String name = constant.name().toLowerCase();
+                constants.put(name, constant);
+                names.add(name);
+            }
+        }
+
+        @Override
+        public T resolve(CommandSender sender, String input) {
+            return constants.get(input);
+        }
+
+        @Override
+        public List<String> complete(CommandSender sender, String prefix) {
+            return StringUtil.copyPartialMatches(prefix, names, new ArrayList<String>());
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.Arrays;
+
+/**
+ * Single pass tokenizer for the arguments of commands that declare {@link Command#flags()} or enable
+ * {@link Command#quoted()}. It joins quoted arguments, resolves escapes and extracts declared flags.
+ * <p>
+ * Arguments are fed one by one, so the state after a prefix of the arguments can be inspected (e.g. to find out
+ * during tab completion whether the cursor is inside a quote or a flag value). Arguments that need no changes are
+ * passed through without copying.
+ */
+class ArgumentTokenizer {
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Flag[] flags;
+    private final String[] flagValues;
+    private final String[] input;
+    private final int offset;
+    // null until the first argument is changed, the tokens are the input arguments up to then
+    private String[] tokens;
+    private int count;
+    private StringBuilder quote;
+    private Flag pendingFlag;
+    private boolean flagsEnded;
+    private String error;
+
+    /**
+     * Creates a tokenizer for arguments that are fed in order from an array
+     *
+     * @param flags  The declared flags
+     * @param input  The arguments
+     * @param offset The index of the first argument that is fed
+     */
+    ArgumentTokenizer(Flag[] flags, String[] input, int offset) {
+        this.flags = flags;
+        this.flagValues = flags.length > 0 ? new String[flags.length] : NO_VALUES;
+        this.input = input;
+        this.offset = offset;
+    }
+
+    /**
+     * Parses flag declarations like "f" (a switch) or "radius:int" (a flag with a value).
+     * Supported value types are int, long, double and string.
+     *
+     * @param declarations The declarations
+     * @return The flags
+     * @throws IllegalArgumentException if a declaration is invalid
+     */
+    public static Flag[] parseFlags(String[] declarations) {
+        Flag[] flags = new Flag[declarations.length];
+        for (int i = 0; i < declarations.length; i++) {
+            String declaration = declarations[i];
+            int separator = declaration.indexOf(':');
+            String name = separator < 0 ? declaration : declaration.substring(0, separator);
+            String type = separator < 0 ? null : declaration.substring(separator + 1).toLowerCase();
+            if (name.isEmpty() || name.startsWith("-") || name.indexOf('=') >= 0 || name.indexOf(' ') >= 0) {
+                throw new IllegalArgumentException("Invalid flag \"" + declaration + "\"");
+            }
+            if (type != null && !type.equals("int") && !type.equals("long") && !type.equals("double") && !type.equals("string")) {
+                throw new IllegalArgumentException("Unsupported type of flag \"" + declaration + "\". Use int, long, double or string");
+            }
+            for (int j = 0; j < i; j++) {
+                if (flags[j].name.equalsIgnoreCase(name)) {
+                    throw new IllegalArgumentException("Duplicate flag \"" + name + "\"");
+                }
+            }
+            flags[i] = new Flag(i, name, type);
+        }
+        return flags;
+    }
+
+    /**
+     * Processes the next argument
+     *
+     * @param arg The argument as split by Bukkit
+     * @return false if the argument is invalid, see {@link #getError()}
+     */
+    public boolean feed(String arg) {
+        if (error != null) {
+            return false;
+        }
+        if (quote != null) {
+            quote.append(' ');
+            if (appendUnescaped(arg, 0, arg.length(), true)) {
+                emit(quote.toString());
+                quote = null;
+            }
+            return error == null;
+        }
+        if (pendingFlag == null && !flagsEnded && arg.length() > 1 && arg.charAt(0) == '-') {
+            if (arg.equals("--")) {
+                flagsEnded = true;
+                markChanged();
+                return true;
+            }
+            int start = arg.charAt(1) == '-' ? 2 : 1;
+            int end = arg.indexOf('=');
+            Flag flag = findFlag(arg, start, end < 0 ? arg.length() : end);
+            if (flag != null) {
+                markChanged();
+                if (flag.type == null) {
+                    if (end >= 0) {
+                        error = "Flag " + flag.getUsage() + " does not take a value";
+                        return false;
+                    }
+                    flagValues[flag.index] = "";
+                } else if (end >= 0) {
+                    pendingFlag = flag;
+                    return readValue(arg, end + 1);
+                } else {
+                    pendingFlag = flag;
+                }
+                return true;
+            }
+        }
+        return readValue(arg, 0);
+    }
+
+    private boolean readValue(String arg, int start) {
+        if (start < arg.length() && arg.charAt(start) == '"') {
+            markChanged();
+            quote = new StringBuilder(arg.length());
+            if (appendUnescaped(arg, start + 1, arg.length(), true)) {
+                emit(quote.toString());
+                quote = null;
+            }
+            return error == null;
+        }
+        if (arg.indexOf('\\', start) >= 0) {
+            markChanged();
+            quote = new StringBuilder(arg.length());
+            appendUnescaped(arg, start, arg.length(), false);
+            String value = quote.toString();
+            quote = null;
+            emit(value);
+        } else {
+            emit(start == 0 ? arg : arg.substring(start));
+        }
+        return error == null;
+    }
+
+    /**
+     * Appends a part of an argument to the current quote and resolves escapes
+     *
+     * @return true if an unescaped closing quote ended the argument
+     */
+    private boolean appendUnescaped(String arg, int from, int to, boolean quoted) {
+        for (int i = from; i < to; i++) {
+            char c = arg.charAt(i);
+            if (c == '\\' && i + 1 < to) {
+                quote.append(arg.charAt(++i));
+            } else if (quoted && c == '"' && i == to - 1) {
+                return true;
+            } else {
+                quote.append(c);
+            }
+        }
+        return false;
+    }
+
+    private void emit(String value) {
+        if (pendingFlag != null) {
+            Flag flag = pendingFlag;
+            pendingFlag = null;
+            if (!flag.isValid(value)) {
+                error = "Invalid value \"" + value + "\" for flag " + flag.getUsage();
+                return;
+            }
+            flagValues[flag.index] = value;
+            return;
+        }
+        if (tokens != null) {
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count * 2 + 1);
+            }
+            tokens[count] = value;
+        }
+        count++;
+    }
+
+    private void markChanged() {
+        if (tokens == null) {
+            tokens = Arrays.copyOfRange(input, offset, Math.max(input.length, offset + count + 1));
+        }
+    }
+
+    private Flag findFlag(String arg, int start, int end) {
+        for (Flag flag : flags) {
+            if (flag.name.length() == end - start && arg.regionMatches(true, start, flag.name, 0, flag.name.length())) {
+                return flag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finishes the input. An unterminated quote is closed, a flag without a value is an error.
+     *
+     * @return false if the arguments are invalid, see {@link #getError()}
+     */
+    public boolean finish() {
+        if (quote != null) {
+            emit(quote.toString());
+            quote = null;
+        }
+        if (error == null && pendingFlag != null) {
+            error = "Missing value for flag " + pendingFlag.getUsage();
+        }
+        return error == null;
+    }
+
+    /**
+     * Gets the reason why the arguments are invalid
+     *
+     * @return The message or null if the arguments are valid
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Checks if the last argument ended inside a quote
+     *
+     * @return true if a quote is open
+     */
+    public boolean isInQuote() {
+        return quote != null;
+    }
+
+    /**
+     * Gets the flag that expects the next argument as its value
+     *
+     * @return The flag or null
+     */
+    public Flag getPendingFlag() {
+        return pendingFlag;
+    }
+
+    /**
+     * Checks if flags are still recognized, i.e. "--" was not passed yet
+     *
+     * @return true if flags are recognized
+     */
+    public boolean acceptsFlags() {
+        return !flagsEnded;
+    }
+
+    /**
+     * Checks if any argument was joined, unescaped or removed. Otherwise the input arguments can be used as they are.
+     *
+     * @return true if the arguments were changed
+     */
+    public boolean isChanged() {
+        return tokens != null;
+    }
+
+    /**
+     * Gets the positional arguments. Only the first {@link #getCount()} elements are used.
+     *
+     * @return The positional arguments or null if the arguments were not changed
+     */
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Gets the number of positional arguments
+     *
+     * @return The number of positional arguments
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the values of all declared flags in declaration order. Switches that were passed have an empty value,
+     * flags that were not passed are null.
+     *
+     * @return The flag values
+     */
+    public String[] getFlagValues() {
+        return flagValues;
+    }
+
+    static final class Flag {
+        final int index;
+        final String name;
+        final String type;
+
+        Flag(int index, String name, String type) {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+        }
+
+        boolean isValid(String value) {
+            if (type == null || type.equals("string")) {
+                return true;
+            } else if (type.equals("int")) {
+                return Parsers.isInt(value);
+            } else if (type.equals("long")) {
+                return Parsers.isLong(value);
+            }
+            return Parsers.isDouble(value);
+        }
+
+        String getUsage() {
+            return (name.length() == 1 ? "-" : "--") + name;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AsyncDispatcher {
+    private volatile ExecutorService executor;
+    private volatile Semaphore permits;
+    private boolean ownsExecutor = false;
+
+    AsyncDispatcher(int maxTasks) {
+        setMaxTasks(maxTasks);
+    }
+
+    void setMaxTasks(int maxTasks) {
+        permits = new Semaphore(maxTasks);
+    }
+
+    synchronized void setExecutor(ExecutorService executor) {
+        if (ownsExecutor && this.executor != null) {
+            this.executor.shutdown();
+        }
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Submits a task to the executor unless the maximum number of running tasks is reached
+     *
+     * @param task The task
+     * @return false if the task was rejected
+     */
+    boolean submit(final Runnable task) {
+        final Semaphore permits = this.permits;
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return false;
+        }
+    }
+
+    synchronized void shutdown() {
+        if (ownsExecutor && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    this.executor = executor = createDefaultExecutor();
+                    ownsExecutor = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            // virtual threads are only available on Java 21+
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CommandFramework-Async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A BK-tree over lower case words. It finds all words within a small edit distance of a query without comparing
+ * the query to every word.
+ *
+ * @param <T> The value stored with every word
+ */
+class BkTree<T> {
+    private Node<T> root;
+    private int size;
+
+    /**
+     * Adds a word. Words that are already in the tree are ignored.
+     *
+     * @param word  The lower case word
+     * @param value The value stored with the word
+     */
+    public void add(String word, T value) {
+        if (root == null) {
+            root = new Node<>(word, value);
+            size++;
+            return;
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = distance(node.word, word);
+            if (distance == 0) {
+                return;
+            }
+            Node<T> child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node<>(word, value));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds all words within the given edit distance of the query
+     *
+     * @param query       The lower case query
+     * @param maxDistance The maximum edit distance
+     * @param matches     The list the matches are added to
+     */
+    public void search(String query, int maxDistance, List<Match<T>> matches) {
+        if (root == null) {
+            return;
+        }
+        List<Node<T>> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.remove(pending.size() - 1);
+            int distance = distance(node.word, query);
+            if (distance <= maxDistance) {
+                matches.add(new Match<>(node.word, node.value, distance));
+            }
+            // only subtrees with a distance in [d - max, d + max] can contain matches (triangle inequality)
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int i = from; i <= to; i++) {
+                if (node.children[i] != null) {
+                    pending.add(node.children[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the Levenshtein distance of two strings
+     *
+     * @param a The first string
+     * @param b The second string
+     * @return The distance
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    static final class Match<T> {
+        final String word;
+        final T value;
+        final int distance;
+
+        Match(String word, T value, int distance) {
+            this.word = word;
+            this.value = value;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Node<T> {
+        final String word;
+        final T value;
+        Node<T>[] children = newChildren();
+
+        Node(String word, T value) {
+            this.word = word;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newChildren() {
+            return (Node<T>[]) new Node<?>[0];
+        }
+
+        Node<T> child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+
+        void setChild(int distance, Node<T> child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+    }
+}
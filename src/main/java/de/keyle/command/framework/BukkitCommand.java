@@ -27,23 +27,37 @@ import org.bukkit.plugin.Plugin;
 
 import java.util.List;
 
-public class BukkitCommand extends Command {
+public class BukkitCommand extends Command implements PluginIdentifiableCommand {
     private final Plugin owningPlugin;
     private CommandExecutor executor;
     protected BukkitCompleter completer;
+    private String[] usageLines = new String[0];
 
     protected BukkitCommand(String command, Plugin owningPlugin) {
+        this(command, owningPlugin, owningPlugin);
+    }
+
+    /**
+     * @param owningPlugin The plugin or null if the command is not owned by a plugin
+     * @param executor     The executor the command passes its executions to
+     */
+    BukkitCommand(String command, Plugin owningPlugin, CommandExecutor executor) {
         super(command);
-        this.executor = owningPlugin;
+        this.executor = executor;
         this.owningPlugin = owningPlugin;
         this.usageMessage = "";
     }
 
+    @Override
+    public Plugin getPlugin() {
+        return owningPlugin;
+    }
+
     @Override
     public boolean execute(CommandSender sender, String commandLabel, String[] args) {
         boolean success;
 
-        if (!owningPlugin.isEnabled()) {
+        if (owningPlugin != null && !owningPlugin.isEnabled()) {
             return false;
         }
 
@@ -54,17 +68,25 @@ public class BukkitCommand extends Command {
         try {
             success = executor.onCommand(sender, this, commandLabel, args);
         } catch (Throwable ex) {
-            throw new CommandException("Unhandled exception executing command '" + commandLabel + "' in plugin " + owningPlugin.getDescription().getFullName(), ex);
+            throw new CommandException("Unhandled exception executing command '" + commandLabel + "' in plugin " + getPluginName(owningPlugin), ex);
         }
 
-        if (!success && usageMessage.length() > 0) {
-            for (String line : usageMessage.replace("<command>", commandLabel).split("\n")) {
-                sender.sendMessage(line);
+        if (!success) {
+            for (String line : usageLines) {
+                sender.sendMessage(line.contains("<command>") ? line.replace("<command>", commandLabel) : line);
             }
         }
         return success;
     }
 
+    @Override
+    public Command setUsage(String usage) {
+        super.setUsage(usage);
+        // split once here instead of on every failed execution
+        usageLines = usageMessage.isEmpty() ? new String[0] : usageMessage.split("\n");
+        return this;
+    }
+
     @Override
     public List<String> tabComplete(CommandSender sender, String alias, String[] args) throws CommandException, IllegalArgumentException {
         Validate.notNull(sender, "Sender cannot be null!");
@@ -80,13 +102,7 @@ public class BukkitCommand extends Command {
                 completions = ((TabCompleter) executor).onTabComplete(sender, this, alias, args);
             }
         } catch (Throwable throwable) {
-            StringBuilder message = new StringBuilder();
-            message.append("Unhandled exception during tab completion for command \"/").append(alias).append(' ');
-            for (String arg : args) {
-                message.append(arg).append(' ');
-            }
-            message.deleteCharAt(message.length() - 1).append("\" in plugin ").append(owningPlugin.getDescription().getFullName());
-            throw new CommandException(message.toString(), throwable);
+            throw new TabCompleteException(alias, args, owningPlugin, throwable);
         }
 
         if (completions == null) {
@@ -94,4 +110,37 @@ public class BukkitCommand extends Command {
         }
         return completions;
     }
-}
\ No newline at end of file
+
+    private static String getPluginName(Plugin plugin) {
+        return plugin != null ? plugin.getDescription().getFullName() : "none";
+    }
+
+    /**
+     * Builds its message only when it is requested, failing completions can happen on every keystroke
+     */
+    private static final class TabCompleteException extends CommandException {
+        private static final long serialVersionUID = 1L;
+
+        private final String alias;
+        private final String[] args;
+        private final Plugin plugin;
+
+        TabCompleteException(String alias, String[] args, Plugin plugin, Throwable cause) {
+            super(null, cause);
+            this.alias = alias;
+            this.args = args;
+            this.plugin = plugin;
+        }
+
+        @Override
+        public String getMessage() {
+            StringBuilder message = new StringBuilder();
+            message.append("Unhandled exception during tab completion for command \"/").append(alias).append(' ');
+            for (String arg : args) {
+                message.append(arg).append(' ');
+            }
+            message.deleteCharAt(message.length() - 1).append("\" in plugin ").append(getPluginName(plugin));
+            return message.toString();
+        }
+    }
+}
@@ -22,55 +22,185 @@ package de.keyle.command.framework;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginIdentifiableCommand;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.StringUtil;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
 
 public class BukkitCompleter implements TabCompleter {
     public static List<String> EMPTY_LIST = Collections.unmodifiableList(new ArrayList<String>());
-    private Map<String, Entry<Method, Object>> completers = new HashMap<>();
+    private final AtomicReference<RegistrySnapshot> registry;
+    // null if the completer is not created by a framework, CommandArgs then looks players up on the server
+    private final Platform platform;
+    private final CompletionCache cache;
+    private final PermissionCache permissions;
+    private final CommandArgsPool argsPool;
+    private final ExceptionReporter exceptionReporter;
+    private final AtomicReference<CommandRecorder> recorder;
+
+    public BukkitCompleter() {
+        this(new AtomicReference<>(RegistrySnapshot.EMPTY), null, new CompletionCache(), new PermissionCache(), new CommandArgsPool(), new ExceptionReporter(Logger.getLogger("CommandFramework"), new LoggingExceptionHandler(Logger.getLogger("CommandFramework"))), new AtomicReference<CommandRecorder>());
+    }
+
+    BukkitCompleter(AtomicReference<RegistrySnapshot> registry, Platform platform, CompletionCache cache, PermissionCache permissions, CommandArgsPool argsPool, ExceptionReporter exceptionReporter, AtomicReference<CommandRecorder> recorder) {
+        this.registry = registry;
+        this.platform = platform;
+        this.cache = cache;
+        this.permissions = permissions;
+        this.argsPool = argsPool;
+        this.exceptionReporter = exceptionReporter;
+        this.recorder = recorder;
+    }
 
     public void addCompleter(String label, Method m, Object obj) {
-        completers.put(label, new AbstractMap.SimpleEntry<>(m, obj));
+        CompleterDescriptor completer = new CompleterDescriptor(label, Collections.<String>emptyList(), 0, false, CompletableFuture.class.isAssignableFrom(m.getReturnType()), new CommandRegistry.MethodReference(m), obj, Invokers.bind(m, obj));
+        registry.updateAndGet(snapshot -> snapshot.with(Collections.<CommandDescriptor>emptyList(), Collections.singletonList(completer)));
+    }
+
+    boolean isBackedBy(AtomicReference<RegistrySnapshot> registry) {
+        return this.registry == registry;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
-        StringBuilder commandName = new StringBuilder();
-        List<String> arguments = new ArrayList<>();
-        arguments.add(label);
-        arguments.addAll(Arrays.asList(args));
-        if (args.length > 0) {
-            arguments.remove(args.length);
+        CommandRecorder recorder = this.recorder.get();
+        if (recorder != null) {
+            recorder.recordCompletion(sender, label, args);
         }
-
-        String lastCommand = "";
-        int removeCount = 1;
-        for (int i = 0; i < arguments.size(); i++) {
-            String arg = arguments.get(i);
-            if (commandName.length() != 0) {
-                commandName.append(".");
+        // one snapshot for the whole completion, registrations on other threads do not affect it
+        CommandTree tree = registry.get().tree;
+        // null lets Bukkit fall back to the executor of the command and to player names
+        List<String> subcommands = completeSubcommands(tree, sender, label, args);
+        List<String> completions = completeArguments(tree, sender, command, label, args);
+        if (subcommands == null) {
+            return completions;
+        } else if (completions == null || completions.isEmpty()) {
+            return subcommands;
+        }
+        for (String completion : completions) {
+            if (!subcommands.contains(completion)) {
+                subcommands.add(completion);
             }
-            commandName.append(arg);
-            if (completers.containsKey(commandName.toString())) {
-                lastCommand = commandName.toString();
-                removeCount = i + 1;
+        }
+        return subcommands;
+    }
+
+    /**
+     * Completes the names of registered subcommands the sender is allowed to use. Falls back to similar names when
+     * no name starts with the typed prefix.
+     *
+     * @return The names or null if there are none
+     */
+    private List<String> completeSubcommands(CommandTree tree, CommandSender sender, String label, String[] args) {
+        if (args.length == 0) {
+            return null;
+        }
+        CommandNode node = tree.findPath(label, args, args.length - 1);
+        if (node == null || node.getDepth() != args.length - 1) {
+            return null;
+        }
+        String prefix = args[args.length - 1];
+        List<String> names = new ArrayList<>();
+        node.completeChildren(sender, permissions, prefix, names);
+        if (names.isEmpty() && prefix.length() >= 3) {
+            names.addAll(node.suggestChildren(sender, permissions, prefix, 5));
+        }
+        return names.isEmpty() ? null : names;
+    }
+
+    private List<String> completeArguments(CommandTree tree, CommandSender sender, Command command, String label, String[] args) {
+        CommandNode node = tree.findCompleter(label, args);
+        CommandNode commandNode = tree.findCommand(label, args, args.length - 1);
+        if (commandNode != null && (commandNode.command.parameters.length > 0 || commandNode.command.flags != null) && (node == null || commandNode.getDepth() > node.getDepth())) {
+            return completeParameter(commandNode.command, sender, args, commandNode.getDepth());
+        }
+        if (node != null) {
+            CompleterDescriptor completer = node.completer;
+            int end = Math.max(node.getDepth(), args.length - 1);
+            String prefix = args.length > end ? args[end] : "";
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                if (completer.getCacheTime() <= 0) {
+                    List<String> completions = complete(completer, sender, command, args, node.getDepth(), end).join();
+                    return completions == null || prefix.isEmpty() ? completions : StringUtil.copyPartialMatches(prefix, completions, new ArrayList<String>());
+                }
+                CompletionCache.Key key = new CompletionCache.Key(Senders.key(sender), completer, args, node.getDepth(), end);
+                long now = System.currentTimeMillis();
+                CompletionCache.Entry entry = cache.get(key, now);
+                if (entry == null) {
+                    entry = cache.put(key, complete(completer, sender, command, args, node.getDepth(), end), now + completer.getCacheTime());
+                }
+                // async completers that are not done yet return nothing, the result is picked up on the next keystroke
+                return entry.isDone() ? entry.narrow(prefix) : EMPTY_LIST;
+            } catch (Throwable t) {
+                failed = true;
+                exceptionReporter.completionFailed(completer.getName(), sender, t);
+            } finally {
+                completer.getMetrics().recordInvocation(System.nanoTime() - start, failed);
             }
         }
-        if (!lastCommand.isEmpty()) {
-            for (int i = 0; i < removeCount; i++) {
-                arguments.remove(0);
+        return null;
+    }
+
+    private List<String> completeParameter(CommandDescriptor command, CommandSender sender, String[] args, int depth) {
+        String current = args[args.length - 1];
+        int index = args.length - 1 - depth;
+        if (command.flags != null) {
+            // feed everything before the cursor to find out what the current argument is
+            ArgumentTokenizer tokenizer = new ArgumentTokenizer(command.flags, args, depth);
+            for (int i = depth; i < args.length - 1; i++) {
+                if (!tokenizer.feed(args[i])) {
+                    return null;
+                }
             }
-            Entry<Method, Object> entry = completers.get(lastCommand);
-            try {
-                return (List<String>) entry.getKey().invoke(entry.getValue(), new CommandArgs(sender, command, arguments));
-            } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
-                e.printStackTrace();
+            if (tokenizer.isInQuote() || tokenizer.getPendingFlag() != null || current.startsWith("\"")) {
+                return null;
             }
+            if (current.startsWith("-") && tokenizer.acceptsFlags()) {
+                return completeFlags(command, current, tokenizer.getFlagValues());
+            }
+            index = tokenizer.getCount();
+        }
+        if (index < 0 || index >= command.parameters.length) {
+            return null;
+        }
+        try {
+            List<String> completions = command.parameters[index].complete(sender, current);
+            return completions == null || completions.isEmpty() ? null : completions;
+        } catch (Throwable t) {
+            exceptionReporter.completionFailed(command.getName(), sender, t);
+        }
+        return null;
+    }
+
+    private List<String> completeFlags(CommandDescriptor command, String prefix, String[] values) {
+        List<String> completions = new ArrayList<>();
+        for (ArgumentTokenizer.Flag flag : command.flags) {
+            if (values[flag.index] == null && flag.getUsage().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                completions.add(flag.getUsage());
+            }
+        }
+        return completions.isEmpty() ? null : completions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<String>> complete(CompleterDescriptor completer, CommandSender sender, Command command, String[] args, int from, int to) throws Throwable {
+        Plugin plugin = command instanceof PluginIdentifiableCommand ? ((PluginIdentifiableCommand) command).getPlugin() : null;
+        if (completer.isAsync()) {
+            Object result = completer.getInvoker().invoke(new CommandArgs(plugin, platform, sender, command, args, from, to - from));
+            return result != null ? (CompletableFuture<List<String>>) result : CompletableFuture.completedFuture((List<String>) null);
+        }
+        CommandArgs commandArgs = argsPool.acquire(plugin, platform, sender, command, args, from, to - from);
+        try {
+            return CompletableFuture.completedFuture((List<String>) completer.getInvoker().invoke(commandArgs));
+        } finally {
+            argsPool.release(commandArgs);
         }
-        return EMPTY_LIST;
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.SimplePluginManager;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers root commands in the command map of the Bukkit server. Executions reach the framework through the
+ * onCommand method of the plugin.
+ */
+public class BukkitPlatform implements Platform {
+    private final Plugin plugin;
+    private CommandMap bukkitCommandMap;
+
+    public BukkitPlatform(Plugin plugin) {
+        this.plugin = plugin;
+        if (plugin.getServer().getPluginManager() instanceof SimplePluginManager) {
+            SimplePluginManager pluginManager = (SimplePluginManager) plugin.getServer().getPluginManager();
+            try {
+                Field field = SimplePluginManager.class.getDeclaredField("commandMap");
+                field.setAccessible(true);
+                bukkitCommandMap = (CommandMap) field.get(pluginManager);
+            } catch (IllegalArgumentException | SecurityException | IllegalAccessException | NoSuchFieldException e) {
+                plugin.getLogger().log(Level.SEVERE, "Unable to access the command map of the server", e);
+            }
+        }
+    }
+
+    @Override
+    public Command getCommand(String label) {
+        return bukkitCommandMap.getCommand(label);
+    }
+
+    @Override
+    public Command createCommand(String label, CommandFramework framework) {
+        return new BukkitCommand(label, plugin);
+    }
+
+    @Override
+    public void registerCommands(List<Command> commands) {
+        bukkitCommandMap.registerAll(plugin.getName(), commands);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void unregisterCommand(Command command) {
+        command.unregister(bukkitCommandMap);
+        for (Class<?> clazz = bukkitCommandMap.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                Field field = clazz.getDeclaredField("knownCommands");
+                field.setAccessible(true);
+                ((Map<String, Command>) field.get(bukkitCommandMap)).values().removeIf(known -> known == command);
+                return;
+            } catch (NoSuchFieldException ignored) {
+            } catch (IllegalAccessException | SecurityException e) {
+                plugin.getLogger().log(Level.WARNING, "Unable to remove command '" + command.getName() + "' from the command map", e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Player getPlayer(String name) {
+        return plugin.getServer().getPlayerExact(name);
+    }
+
+    @Override
+    public Collection<? extends Player> getOnlinePlayers() {
+        return plugin.getServer().getOnlinePlayers();
+    }
+
+    @Override
+    public World getWorld(String name) {
+        return plugin.getServer().getWorld(name);
+    }
+
+    @Override
+    public List<World> getWorlds() {
+        return plugin.getServer().getWorlds();
+    }
+
+    @Override
+    public Logger getLogger() {
+        return plugin.getLogger();
+    }
+}
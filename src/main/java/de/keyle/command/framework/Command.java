@@ -69,4 +69,73 @@ public @interface Command {
      * @return The usage description of this command
      */
     String usage() default "";
-}
\ No newline at end of file
+
+    /**
+     * Whether the command is executed on a worker thread instead of the main server thread.
+     * Permission checks still happen on the calling thread before the handoff.
+     *
+     * @return true if the command is executed asynchronously
+     */
+    boolean async() default false;
+
+    /**
+     * The maximum number of concurrent executions of this command. 0 means unlimited
+     *
+     * @return The concurrency limit
+     */
+    int maxConcurrent() default 0;
+
+    /**
+     * The message sent to the player when the command can not be executed because too many executions are running
+     *
+     * @return The message
+     */
+    String busyMessage() default "This command is busy right now, please try again later";
+
+    /**
+     * The time in milliseconds a sender has to wait between two executions of this command. 0 disables the cooldown.
+     * Executions that are rejected because of invalid arguments or because the command is busy do not count.
+     *
+     * @return The cooldown in milliseconds
+     */
+    long cooldown() default 0;
+
+    /**
+     * The maximum number of executions per sender within {@link #ratePeriod()}. 0 disables the rate limit
+     *
+     * @return The number of allowed executions
+     */
+    int rateLimit() default 0;
+
+    /**
+     * The period in milliseconds {@link #rateLimit()} applies to
+     *
+     * @return The period in milliseconds
+     */
+    long ratePeriod() default 1000;
+
+    /**
+     * The message sent to the player when the cooldown or rate limit is exceeded. %s is replaced with the remaining seconds
+     *
+     * @return The message
+     */
+    String cooldownMessage() default "Please wait %s seconds before using this command again";
+
+    /**
+     * Flags the command accepts, e.g. {"f", "radius:int"}. A flag without a type is a switch (<code>-f</code>),
+     * a flag with a type (int, long, double or string) takes a value (<code>--radius 5</code> or <code>--radius=5</code>).
+     * Flags are removed from the positional arguments and can be read with {@link CommandArgs#hasFlag(String)} and
+     * {@link CommandArgs#getFlag(String)}. Declaring flags enables {@link #quoted()}.
+     *
+     * @return The flag declarations
+     */
+    String[] flags() default {};
+
+    /**
+     * Whether quoted arguments ("multi word names") are joined into a single argument and backslash escapes are resolved
+     * before the arguments are passed to the handler
+     *
+     * @return true if quotes are parsed
+     */
+    boolean quoted() default false;
+}
@@ -20,20 +20,104 @@
 
 package de.keyle.command.framework;
 
+import org.bukkit.Server;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
+/**
+ * The arguments of a command invocation. This is a view over the argument array passed by Bukkit, the typed
+ * accessors parse an argument only when it is requested and cache the result.
+ * <p>
+ * Synchronous tab completers get an instance that is reused once the completer returns, do not keep a reference to
+ * it. Commands get their own instance that stays valid in tasks that run later.
+ */
 public class CommandArgs {
-    private final CommandSender sender;
-    private final Command command;
-    private final List<String> args;
+    private Plugin plugin;
+    private Platform platform;
+    private CommandSender sender;
+    private Command command;
+    private String[] args;
+    private int offset;
+    private int length;
+    private List<String> argList;
+    private Object[] parsed;
+    private ArgumentTokenizer.Flag[] flags;
+    private String[] flagValues;
+    Object[] values;
+    // int, long and boolean values as long, double and float values as raw double bits
+    long[] primitives;
+    boolean inUse;
 
     protected CommandArgs(CommandSender sender, Command command, List<String> args) {
+        this(null, sender, command, args);
+    }
+
+    protected CommandArgs(Plugin plugin, CommandSender sender, Command command, List<String> args) {
+        this(plugin, null, sender, command, args.toArray(new String[args.size()]), 0, args.size());
+    }
+
+    CommandArgs(Plugin plugin, Platform platform, CommandSender sender, Command command, String[] args, int offset, int length) {
+        init(plugin, platform, sender, command, args, offset, length);
+    }
+
+    CommandArgs() {
+    }
+
+    void init(Plugin plugin, Platform platform, CommandSender sender, Command command, String[] args, int offset, int length) {
+        this.plugin = plugin;
+        this.platform = platform;
         this.sender = sender;
         this.command = command;
         this.args = args;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    void clear() {
+        init(null, null, null, null, null, 0, 0);
+        argList = null;
+        parsed = null;
+        flags = null;
+        flagValues = null;
+        values = null;
+        primitives = null;
+    }
+
+    /**
+     * Runs the arguments through the tokenizer and replaces them with the positional arguments
+     *
+     * @param flags The declared flags of the command
+     * @return The reason why the arguments are invalid or null if they are valid
+     */
+    String tokenize(ArgumentTokenizer.Flag[] flags) {
+        ArgumentTokenizer tokenizer = new ArgumentTokenizer(flags, args, offset);
+        for (int i = 0; i < length; i++) {
+            if (!tokenizer.feed(args[offset + i])) {
+                break;
+            }
+        }
+        if (!tokenizer.finish()) {
+            return tokenizer.getError();
+        }
+        if (tokenizer.isChanged()) {
+            args = tokenizer.getTokens();
+            offset = 0;
+            length = tokenizer.getCount();
+            argList = null;
+            parsed = null;
+        }
+        this.flags = flags;
+        this.flagValues = tokenizer.getFlagValues();
+        return null;
     }
 
     /**
@@ -57,9 +141,358 @@ public class CommandArgs {
     /**
      * Gets all the arguments.
      *
-     * @return A list of all arguments
+     * @return An unmodifiable list of all arguments
      */
     public List<String> getArgs() {
-        return args;
+        if (argList == null) {
+            argList = new ArgumentList(args, offset, length);
+        }
+        return argList;
+    }
+
+    /**
+     * Gets the number of arguments
+     *
+     * @return The number of arguments
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Gets an argument
+     *
+     * @param index The index of the argument
+     * @return The argument or null if there are not enough arguments
+     */
+    public String get(int index) {
+        return index >= 0 && index < length ? args[offset + index] : null;
+    }
+
+    /**
+     * Gets an argument as int
+     *
+     * @param index The index of the argument
+     * @param def   The value that is returned when the argument is missing or not a valid int
+     * @return The parsed argument
+     */
+    public int getInt(int index, int def) {
+        Object value = parsed(index);
+        if (!(value instanceof Integer)) {
+            String arg = get(index);
+            if (arg == null || !Parsers.isInt(arg)) {
+                return def;
+            }
+            value = cache(index, Integer.valueOf(arg));
+        }
+        return (Integer) value;
+    }
+
+    /**
+     * Gets an argument as long
+     *
+     * @param index The index of the argument
+     * @param def   The value that is returned when the argument is missing or not a valid long
+     * @return The parsed argument
+     */
+    public long getLong(int index, long def) {
+        Object value = parsed(index);
+        if (!(value instanceof Long)) {
+            String arg = get(index);
+            if (arg == null || !Parsers.isLong(arg)) {
+                return def;
+            }
+            value = cache(index, Long.valueOf(arg));
+        }
+        return (Long) value;
+    }
+
+    /**
+     * Gets an argument as double
+     *
+     * @param index The index of the argument
+     * @param def   The value that is returned when the argument is missing or not a valid number
+     * @return The parsed argument
+     */
+    public double getDouble(int index, double def) {
+        Object value = parsed(index);
+        if (!(value instanceof Double)) {
+            String arg = get(index);
+            if (arg == null || !Parsers.isDouble(arg)) {
+                return def;
+            }
+            value = cache(index, Double.valueOf(arg));
+        }
+        return (Double) value;
+    }
+
+    /**
+     * Gets an argument as boolean. "true", "yes" and "on" are true, "false", "no" and "off" are false.
+     *
+     * @param index The index of the argument
+     * @param def   The value that is returned when the argument is missing or not a valid boolean
+     * @return The parsed argument
+     */
+    public boolean getBoolean(int index, boolean def) {
+        String arg = get(index);
+        if (arg == null || !Parsers.isBoolean(arg)) {
+            return def;
+        }
+        return Parsers.parseBoolean(arg);
+    }
+
+    /**
+     * Gets the online player named by an argument. The player is looked up on the {@link Platform} of the framework,
+     * arguments that were not created by a framework look it up on the server of the sender.
+     *
+     * @param index The index of the argument
+     * @return The player or null if the argument is missing or the player is not online
+     * @throws IllegalStateException if there is neither a platform nor a server to look the player up
+     */
+    public Player getPlayer(int index) {
+        Object value = parsed(index);
+        if (!(value instanceof Player)) {
+            String arg = get(index);
+            if (arg == null || sender == null) {
+                return null;
+            }
+            Player player = platform != null ? platform.getPlayer(arg) : getServer().getPlayerExact(arg);
+            if (player == null) {
+                return null;
+            }
+            value = cache(index, player);
+        }
+        return (Player) value;
+    }
+
+    private Server getServer() {
+        Server server = sender.getServer();
+        if (server == null) {
+            throw new IllegalStateException("The sender " + sender.getName() + " has no server to look up players");
+        }
+        return server;
+    }
+
+    /**
+     * Joins all arguments starting at an index with spaces, e.g. for messages
+     *
+     * @param index The index of the first argument
+     * @return The joined arguments or an empty string if there are not enough arguments
+     */
+    public String joinFrom(int index) {
+        return join(index, length);
+    }
+
+    /**
+     * Gets an argument that may be quoted. If the argument starts with a double quote all arguments up to the one
+     * that ends with a double quote are joined and the quotes are removed.
+     *
+     * @param index The index of the argument
+     * @return The argument or null if there are not enough arguments
+     */
+    public String getQuoted(int index) {
+        String arg = get(index);
+        if (arg == null || arg.isEmpty() || arg.charAt(0) != '"') {
+            return arg;
+        }
+        if (arg.length() > 1 && arg.charAt(arg.length() - 1) == '"') {
+            return arg.substring(1, arg.length() - 1);
+        }
+        for (int end = index + 1; end < length; end++) {
+            String next = args[offset + end];
+            if (!next.isEmpty() && next.charAt(next.length() - 1) == '"') {
+                String joined = join(index, end + 1);
+                return joined.substring(1, joined.length() - 1);
+            }
+        }
+        // unterminated quote, use everything that follows
+        return joinFrom(index).substring(1);
+    }
+
+    /**
+     * Checks if a flag (<code>-name</code> or <code>--name</code>) was passed
+     *
+     * @param name The name of the flag without dashes
+     * @return true if the flag was passed
+     */
+    public boolean hasFlag(String name) {
+        if (flags != null) {
+            return declaredFlag(name) != null;
+        }
+        return findFlag(name) >= 0;
+    }
+
+    /**
+     * Gets the value of a flag passed as <code>--name=value</code>, <code>--name value</code> or <code>-name value</code>.
+     * Values of flags declared in {@link Command#flags()} may be quoted.
+     *
+     * @param name The name of the flag without dashes
+     * @return The value or null if the flag was not passed or has no value
+     */
+    public String getFlag(String name) {
+        if (flags != null) {
+            String value = declaredFlag(name);
+            return value != null && !value.isEmpty() ? value : null;
+        }
+        int index = findFlag(name);
+        if (index < 0) {
+            return null;
+        }
+        String arg = args[offset + index];
+        int separator = arg.indexOf('=');
+        if (separator >= 0) {
+            return arg.substring(separator + 1);
+        }
+        String next = get(index + 1);
+        return next != null && !next.startsWith("-") ? next : null;
+    }
+
+    /**
+     * Gets the value of a flag as int
+     *
+     * @param name The name of the flag without dashes
+     * @param def  The value that is returned when the flag is missing or not a valid int
+     * @return The parsed value
+     */
+    public int getFlagInt(String name, int def) {
+        String value = getFlag(name);
+        return value != null && Parsers.isInt(value) ? Integer.parseInt(value) : def;
+    }
+
+    /**
+     * Gets the value of a flag as long
+     *
+     * @param name The name of the flag without dashes
+     * @param def  The value that is returned when the flag is missing or not a valid long
+     * @return The parsed value
+     */
+    public long getFlagLong(String name, long def) {
+        String value = getFlag(name);
+        return value != null && Parsers.isLong(value) ? Long.parseLong(value) : def;
+    }
+
+    /**
+     * Gets the value of a flag as double
+     *
+     * @param name The name of the flag without dashes
+     * @param def  The value that is returned when the flag is missing or not a valid number
+     * @return The parsed value
+     */
+    public double getFlagDouble(String name, double def) {
+        String value = getFlag(name);
+        return value != null && Parsers.isDouble(value) ? Double.parseDouble(value) : def;
+    }
+
+    private String declaredFlag(String name) {
+        for (ArgumentTokenizer.Flag flag : flags) {
+            if (flag.name.equalsIgnoreCase(name)) {
+                return flagValues[flag.index];
+            }
+        }
+        return null;
+    }
+
+    private int findFlag(String name) {
+        for (int i = 0; i < length; i++) {
+            String arg = args[offset + i];
+            if (arg.length() < 2 || arg.charAt(0) != '-') {
+                continue;
+            }
+            int start = arg.charAt(1) == '-' ? 2 : 1;
+            int end = arg.indexOf('=');
+            if (end < 0) {
+                end = arg.length();
+            }
+            if (end - start == name.length() && arg.regionMatches(true, start, name, 0, name.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String join(int from, int to) {
+        if (from >= to) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(args[offset + from]);
+        for (int i = from + 1; i < to; i++) {
+            builder.append(' ').append(args[offset + i]);
+        }
+        return builder.toString();
+    }
+
+    private Object parsed(int index) {
+        return parsed != null && index >= 0 && index < length ? parsed[index] : null;
+    }
+
+    private Object cache(int index, Object value) {
+        if (parsed == null) {
+            parsed = new Object[length];
+        }
+        parsed[index] = value;
+        return value;
+    }
+
+    /**
+     * Runs a task on the main server thread. Use this to access the world from asynchronous commands.
+     * The task is executed immediately when this is already called from the main thread.
+     *
+     * @param task The task to run
+     */
+    public void runSync(Runnable task) {
+        if (getPlugin().getServer().isPrimaryThread()) {
+            task.run();
+        } else {
+            plugin.getServer().getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Calls a method on the main server thread. Use this to access the world from asynchronous commands.
+     * The method is called immediately when this is already called from the main thread.
+     *
+     * @param task The method to call
+     * @param <T>  The return type of the method
+     * @return A future that completes with the result of the method
+     */
+    public <T> Future<T> callSync(Callable<T> task) {
+        if (getPlugin().getServer().isPrimaryThread()) {
+            FutureTask<T> future = new FutureTask<>(task);
+            future.run();
+            return future;
+        }
+        return plugin.getServer().getScheduler().callSyncMethod(plugin, task);
+    }
+
+    private Plugin getPlugin() {
+        if (plugin == null) {
+            throw new IllegalStateException("No plugin is available to schedule tasks for this command");
+        }
+        return plugin;
+    }
+
+    private static final class ArgumentList extends AbstractList<String> implements RandomAccess {
+        private final String[] args;
+        private final int offset;
+        private final int length;
+
+        ArgumentList(String[] args, int offset, int length) {
+            this.args = args;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+            }
+            return args[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
     }
-}
\ No newline at end of file
+}
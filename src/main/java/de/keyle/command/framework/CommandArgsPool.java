@@ -0,0 +1,63 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Keeps one reusable {@link CommandArgs} per thread for synchronous tab completers, which return their result
+ * before the instance is reused. Commands always get their own instance because handlers may keep it for later
+ * tasks. Nested invocations on the same thread get a new instance.
+ */
+class CommandArgsPool {
+    private final ThreadLocal<CommandArgs> pool = ThreadLocal.withInitial(CommandArgs::new);
+
+    public CommandArgs acquire(Plugin plugin, Platform platform, CommandSender sender, Command command, String[] args, int offset, int length) {
+        CommandArgs commandArgs = pool.get();
+        if (commandArgs.inUse) {
+            return new CommandArgs(plugin, platform, sender, command, args, offset, length);
+        }
+        commandArgs.init(plugin, platform, sender, command, args, offset, length);
+        commandArgs.inUse = true;
+        return commandArgs;
+    }
+
+    /**
+     * Clears a pooled instance so that it can be used for the next invocation. Other instances are ignored.
+     *
+     * @param commandArgs The arguments of the finished invocation
+     */
+    public void release(CommandArgs commandArgs) {
+        if (commandArgs.inUse) {
+            commandArgs.clear();
+            commandArgs.inUse = false;
+        }
+    }
+
+    /**
+     * Removes the instance of the current thread
+     */
+    public void clear() {
+        pool.remove();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Read-only description of a registered {@link Command} handler. All values are resolved once at registration time.
+ */
+public class CommandDescriptor {
+    private final String name;
+    private final List<String> aliases;
+    private final String permission;
+    private final String noPermissionMessage;
+    private final String description;
+    private final String usage;
+    private final CommandRegistry.MethodReference method;
+    private final Object instance;
+    private final CommandInvoker invoker;
+    private final boolean async;
+    private final int maxConcurrent;
+    private final String busyMessage;
+    private final CommandMetrics metrics;
+    final Semaphore concurrencyLimit;
+    final RateLimiter cooldown;
+    final RateLimiter rateLimit;
+    private final String cooldownMessage;
+    final ParameterBinding[] parameters;
+    final int requiredParameters;
+    final boolean hasResolvedValues;
+    final boolean hasPrimitiveValues;
+    // null if the arguments are passed without tokenizing
+    final ArgumentTokenizer.Flag[] flags;
+    final CommandInterceptor[] annotatedInterceptors;
+    // the composed chain of global and annotated interceptors, null if there are none
+    volatile CommandInterceptor[] interceptors;
+
+    CommandDescriptor(Command command, CommandRegistry.MethodReference method, Object instance, CommandInvoker invoker, ParameterBinding[] parameters, ArgumentTokenizer.Flag[] flags, CommandInterceptor[] annotatedInterceptors) {
+        this.name = command.name().toLowerCase();
+        this.aliases = Collections.unmodifiableList(Arrays.asList(command.aliases()));
+        this.permission = command.permission();
+        this.noPermissionMessage = command.noPerm();
+        this.description = command.description();
+        this.parameters = parameters;
+        this.flags = flags.length > 0 || command.quoted() ? flags : null;
+        this.annotatedInterceptors = annotatedInterceptors;
+        int required = 0;
+        boolean hasResolvedValues = false;
+        boolean hasPrimitiveValues = false;
+        for (ParameterBinding parameter : parameters) {
+            if (!parameter.isOptional()) {
+                required++;
+            }
+            hasResolvedValues |= !parameter.isPrimitive();
+            hasPrimitiveValues |= parameter.isPrimitive();
+        }
+        this.requiredParameters = required;
+        this.hasResolvedValues = hasResolvedValues;
+        this.hasPrimitiveValues = hasPrimitiveValues;
+        this.usage = command.usage().isEmpty() && (parameters.length > 0 || flags.length > 0) ? generateUsage() : command.usage();
+        this.method = method;
+        this.instance = instance;
+        this.invoker = invoker;
+        this.async = command.async();
+        this.maxConcurrent = command.maxConcurrent();
+        this.busyMessage = command.busyMessage();
+        this.metrics = new CommandMetrics(name, false);
+        this.cooldown = command.cooldown() > 0 ? new RateLimiter(1, command.cooldown()) : null;
+        this.rateLimit = command.rateLimit() > 0 ? new RateLimiter(command.rateLimit(), command.ratePeriod()) : null;
+        this.cooldownMessage = command.cooldownMessage();
+        this.concurrencyLimit = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+    }
+
+    private String generateUsage() {
+        StringBuilder usage = new StringBuilder("/").append(name.replace('.', ' '));
+        for (ParameterBinding parameter : parameters) {
+            usage.append(' ').append(parameter.getUsage());
+        }
+        if (flags != null) {
+            for (ArgumentTokenizer.Flag flag : flags) {
+                usage.append(" [").append(flag.getUsage());
+                if (flag.type != null) {
+                    usage.append(" <").append(flag.type).append('>');
+                }
+                usage.append(']');
+            }
+        }
+        return usage.toString();
+    }
+
+    /**
+     * Gets the dotted name of the command (e.g. "pet.info")
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the alternate names of the command
+     *
+     * @return An unmodifiable list of all aliases
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * Gets the required permission of the command
+     *
+     * @return The permission or an empty string if none is required
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+    /**
+     * Gets the message sent to senders without permission
+     *
+     * @return The message
+     */
+    public String getNoPermissionMessage() {
+        return noPermissionMessage;
+    }
+
+    /**
+     * Gets the description of the command
+     *
+     * @return The description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the usage of the command. Commands with typed parameters and without an explicit usage get a generated one.
+     *
+     * @return The usage
+     */
+    public String getUsage() {
+        return usage;
+    }
+
+    /**
+     * Gets the handler method
+     *
+     * @return The method
+     */
+    public Method getMethod() {
+        return method.getMethod();
+    }
+
+    /**
+     * Gets the object the handler method is called on
+     *
+     * @return The owning instance
+     */
+    public Object getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the invoker the handler method is bound to
+     *
+     * @return The invoker
+     */
+    public CommandInvoker getInvoker() {
+        return invoker;
+    }
+
+    /**
+     * Gets the message sent when the cooldown or rate limit is exceeded
+     *
+     * @return The message
+     */
+    public String getCooldownMessage() {
+        return cooldownMessage;
+    }
+
+    /**
+     * Gets the invocation metrics of the command
+     *
+     * @return The metrics
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether the command is executed on a worker thread
+     *
+     * @return true if the command is executed asynchronously
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Gets the maximum number of concurrent executions of this command
+     *
+     * @return The concurrency limit or 0 if it is unlimited
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Gets the message sent when the concurrency limit is reached
+     *
+     * @return The message
+     */
+    public String getBusyMessage() {
+        return busyMessage;
+    }
+}
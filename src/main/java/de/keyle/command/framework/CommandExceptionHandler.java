@@ -0,0 +1,50 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * Handles exceptions thrown by commands, tab completers and argument resolvers. The default handler shows
+ * {@link CommandMessageException}s to the sender and logs all other exceptions rate limited and off the main thread.
+ *
+ * @see CommandFramework#setExceptionHandler(CommandExceptionHandler)
+ */
+public interface CommandExceptionHandler {
+    /**
+     * Called when a command or one of its interceptors threw an exception
+     *
+     * @param command The command
+     * @param args    The arguments of the invocation
+     * @param error   The exception
+     */
+    void onCommandError(CommandDescriptor command, CommandArgs args, Throwable error);
+
+    /**
+     * Called when a tab completer or argument resolver threw an exception. This can happen on every keystroke, so
+     * implementations should not send messages to the sender.
+     *
+     * @param name   The name of the completer or command
+     * @param sender The sender
+     * @param error  The exception
+     */
+    void onCompletionError(String name, CommandSender sender, Throwable error);
+}
@@ -20,24 +20,46 @@
 
 package de.keyle.command.framework;
 
-import org.bukkit.command.CommandMap;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.plugin.SimplePluginManager;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.security.CodeSource;
 import java.util.*;
-import java.util.Map.Entry;
-
-import static java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 public class CommandFramework {
-    private Map<String, Entry<Method, Object>> commandMap = new HashMap<>();
-    private CommandMap bukkitCommandMap;
+    public static final int DEFAULT_MAX_ASYNC_TASKS = 64;
+    public static final int DEFAULT_TRACE_CAPACITY = 256;
+
+    // published registry state, read without locking by dispatch and tab completion
+    private final AtomicReference<RegistrySnapshot> registry = new AtomicReference<>(RegistrySnapshot.EMPTY);
+    // guards all changes of the registry and the state below
+    private final Object registryLock = new Object();
+    private final Map<String, org.bukkit.command.Command> rootCommands = new HashMap<>();
+    private final Platform platform;
     private Plugin plugin;
+    private final ArgumentResolvers argumentResolvers;
+    private final PermissionCache permissionCache = new PermissionCache();
+    private final CompletionCache completionCache = new CompletionCache();
+    private final List<GlobalInterceptor> globalInterceptors = new ArrayList<>();
+    private final Map<Class<?>, CommandInterceptor> annotatedInterceptors = new HashMap<>();
+    private final CommandArgsPool argsPool = new CommandArgsPool();
+    private final AsyncDispatcher asyncDispatcher = new AsyncDispatcher(DEFAULT_MAX_ASYNC_TASKS);
+    private final LoggingExceptionHandler defaultExceptionHandler;
+    private final ExceptionReporter exceptionReporter;
+    // null while tracing is disabled, so dispatch only pays for one volatile read
+    private volatile DispatchTracer tracer;
+    private volatile DispatchTracer lastTracer;
+    // null while no log is recorded
+    private final AtomicReference<CommandRecorder> recorder = new AtomicReference<>();
 
     /**
      * Initializes the command framework and sets up the command maps
@@ -45,17 +67,22 @@ public class CommandFramework {
      * @param plugin The {@link org.bukkit.plugin.java.JavaPlugin} the command is registered for
      */
     public CommandFramework(Plugin plugin) {
+        this(plugin, new BukkitPlatform(plugin));
+    }
+
+    /**
+     * Initializes the command framework for a custom platform, e.g. the {@link InMemoryPlatform} to run commands
+     * without a server
+     *
+     * @param plugin   The plugin the commands are registered for or null if there is none
+     * @param platform The platform the root commands are registered in
+     */
+    public CommandFramework(Plugin plugin, Platform platform) {
         this.plugin = plugin;
-        if (plugin.getServer().getPluginManager() instanceof SimplePluginManager) {
-            SimplePluginManager pluginManager = (SimplePluginManager) plugin.getServer().getPluginManager();
-            try {
-                Field field = SimplePluginManager.class.getDeclaredField("commandMap");
-                field.setAccessible(true);
-                bukkitCommandMap = (CommandMap) field.get(pluginManager);
-            } catch (IllegalArgumentException | SecurityException | IllegalAccessException | NoSuchFieldException e) {
-                e.printStackTrace();
-            }
-        }
+        this.platform = platform;
+        this.argumentResolvers = new ArgumentResolvers(platform);
+        this.defaultExceptionHandler = new LoggingExceptionHandler(platform.getLogger());
+        this.exceptionReporter = new ExceptionReporter(platform.getLogger(), defaultExceptionHandler);
     }
 
     /**
@@ -68,132 +95,1017 @@ public class CommandFramework {
      * @return Always returns true
      */
     public boolean handleCommand(CommandSender sender, String label, org.bukkit.command.Command cmd, String[] args) {
-        StringBuilder commandName = new StringBuilder();
-        List<String> arguments = new ArrayList<>();
-        arguments.add(label);
-        arguments.addAll(Arrays.asList(args));
-
-        String lastCommand = "";
-        int removeCount = 1;
-        for (int i = 0; i < arguments.size(); i++) {
-            String arg = arguments.get(i);
-            if (commandName.length() != 0) {
-                commandName.append(".");
-            }
-            commandName.append(arg);
-            if (commandMap.containsKey(commandName.toString())) {
-                lastCommand = commandName.toString();
-                removeCount = i + 1;
-            }
-        }
-        if (!lastCommand.isEmpty()) {
-            for (int i = 0; i < removeCount; i++) {
-                arguments.remove(0);
-            }
-            Entry<Method, Object> entry = commandMap.get(lastCommand);
-            Command command = entry.getKey().getAnnotation(Command.class);
-            if (!sender.hasPermission(command.permission())) {
-                sender.sendMessage(command.noPerm());
-                return true;
+        CommandRecorder recorder = this.recorder.get();
+        if (recorder != null) {
+            recorder.recordCommand(sender, label, args);
+        }
+        DispatchTracer tracer = this.tracer;
+        if (tracer == null) {
+            dispatch(sender, label, cmd, args, null);
+            return true;
+        }
+        DispatchTrace trace = tracer.start(label, args);
+        try {
+            dispatch(sender, label, cmd, args, trace);
+        } finally {
+            tracer.finish(trace, sender);
+        }
+        return true;
+    }
+
+    private void dispatch(CommandSender sender, String label, org.bukkit.command.Command cmd, String[] args, DispatchTrace trace) {
+        CommandTree commandTree = registry.get().tree;
+        CommandNode node = commandTree.findCommand(label, args);
+        if (trace != null) {
+            trace.mark(DispatchTrace.Phase.LOOKUP);
+        }
+        if (node != null) {
+            CommandDescriptor command = node.command;
+            if (trace != null) {
+                trace.setCommand(command.getName());
             }
-            try {
-                entry.getKey().invoke(entry.getValue(), new CommandArgs(sender, cmd, Collections.unmodifiableList(arguments)));
-            } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
-                e.printStackTrace();
+            if (node.getDepth() < args.length && suggestInstead(commandTree, node, sender, label, args)) {
+                return;
+            }
+            if (!permissionCache.hasPermission(sender, command.getPermission())) {
+                command.getMetrics().recordPermissionDenial();
+                sender.sendMessage(command.getNoPermissionMessage());
+                return;
+            }
+            if (trace != null) {
+                trace.mark(DispatchTrace.Phase.PERMISSION);
+            }
+            if (command.isAsync()) {
+                dispatchAsync(command, new CommandArgs(plugin, platform, sender, cmd, args, node.getDepth(), args.length - node.getDepth()), trace);
+                return;
             }
+            CommandArgs commandArgs = new CommandArgs(plugin, platform, sender, cmd, args, node.getDepth(), args.length - node.getDepth());
+            if (command.flags != null && !tokenize(command, commandArgs)) {
+                return;
+            }
+            if (command.parameters.length > 0 && !resolveParameters(command, commandArgs)) {
+                return;
+            }
+            if (!admit(command, sender)) {
+                return;
+            }
+            if (trace != null) {
+                trace.mark(DispatchTrace.Phase.PARSE);
+            }
+            invoke(command, commandArgs);
+            if (trace != null) {
+                trace.mark(DispatchTrace.Phase.INVOKE);
+            }
+            return;
+        }
+        suggestCommands(commandTree, sender, label, args);
+    }
+
+    private void suggestCommands(CommandTree commandTree, CommandSender sender, String label, String[] args) {
+        CommandNode node = commandTree.findPath(label, args, args.length);
+        if (node == null || node.getDepth() >= args.length) {
+            return;
+        }
+        List<String> suggestions = node.suggestChildren(sender, permissionCache, args[node.getDepth()], 3);
+        if (!suggestions.isEmpty()) {
+            sendSuggestions(sender, label, args, node.getDepth(), suggestions);
+        }
+    }
+
+    /**
+     * Checks if the arguments of a matched command continue with a mistyped subcommand, e.g. "/pet infp" for
+     * "/pet info", and suggests the similar subcommands instead of running the command. A command whose first
+     * parameter accepts the argument is run as usual.
+     */
+    private boolean suggestInstead(CommandTree commandTree, CommandNode node, CommandSender sender, String label, String[] args) {
+        CommandNode path = commandTree.findPath(label, args, args.length);
+        if (path.getDepth() >= args.length) {
+            return false;
+        }
+        List<String> suggestions = path.suggestChildren(sender, permissionCache, args[path.getDepth()], 3);
+        if (suggestions.isEmpty() || (path == node && accepts(node.command, sender, args[node.getDepth()]))) {
+            return false;
+        }
+        sendSuggestions(sender, label, args, path.getDepth(), suggestions);
+        return true;
+    }
+
+    private boolean accepts(CommandDescriptor command, CommandSender sender, String arg) {
+        ParameterBinding[] parameters = command.parameters;
+        if (parameters.length == 0) {
+            return false;
+        }
+        try {
+            return parameters[0].resolve(sender, arg, new Object[parameters.length], new long[parameters.length]);
+        } catch (Throwable t) {
+            // the command reports the failing resolver
             return true;
         }
+    }
+
+    private void sendSuggestions(CommandSender sender, String label, String[] args, int depth, List<String> suggestions) {
+        StringBuilder path = new StringBuilder("/").append(label);
+        for (int i = 0; i < depth; i++) {
+            path.append(' ').append(args[i]);
+        }
+        StringBuilder message = new StringBuilder("Unknown command. Did you mean ");
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (i > 0) {
+                message.append(i == suggestions.size() - 1 ? " or " : ", ");
+            }
+            message.append(path).append(' ').append(suggestions.get(i));
+        }
+        sender.sendMessage(message.append('?').toString());
+    }
+
+    private void dispatchAsync(CommandDescriptor command, CommandArgs commandArgs, DispatchTrace trace) {
+        if (command.flags != null && !tokenize(command, commandArgs)) {
+            return;
+        }
+        if (command.parameters.length > 0 && !resolveParameters(command, commandArgs)) {
+            return;
+        }
+        if (!admit(command, commandArgs.getSender())) {
+            return;
+        }
+        if (trace != null) {
+            trace.mark(DispatchTrace.Phase.PARSE);
+        }
+        if (!asyncDispatcher.submit(new AsyncCommandTask(command, commandArgs))) {
+            release(command);
+            refundRateLimit(command, commandArgs.getSender());
+            commandArgs.getSender().sendMessage(command.getBusyMessage());
+            return;
+        }
+        if (trace != null) {
+            trace.mark(DispatchTrace.Phase.INVOKE);
+        }
+    }
+
+    private boolean tokenize(CommandDescriptor command, CommandArgs commandArgs) {
+        String error = commandArgs.tokenize(command.flags);
+        if (error != null) {
+            commandArgs.getSender().sendMessage(error);
+            commandArgs.getSender().sendMessage("Usage: " + command.getUsage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes a concurrency permit and the cooldown and rate limit tokens of the sender once the arguments are valid.
+     * Nothing is kept when the invocation is rejected, so a rejected invocation does not lock the sender out.
+     */
+    private boolean admit(CommandDescriptor command, CommandSender sender) {
+        if (command.concurrencyLimit != null && !command.concurrencyLimit.tryAcquire()) {
+            sender.sendMessage(command.getBusyMessage());
+            return false;
+        }
+        if ((command.cooldown != null || command.rateLimit != null) && !acquireRateLimit(command, sender)) {
+            release(command);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean acquireRateLimit(CommandDescriptor command, CommandSender sender) {
+        Object key = Senders.key(sender);
+        long now = System.nanoTime();
+        long wait = 0;
+        if (command.cooldown != null) {
+            wait = command.cooldown.tryAcquire(key, now);
+        }
+        if (wait == 0 && command.rateLimit != null) {
+            wait = command.rateLimit.tryAcquire(key, now);
+            if (wait > 0 && command.cooldown != null) {
+                command.cooldown.refund(key);
+            }
+        }
+        if (wait > 0) {
+            command.getMetrics().recordRateLimited();
+            sender.sendMessage(command.getCooldownMessage().replace("%s", String.format("%.1f", wait / 1e9)));
+            return false;
+        }
         return true;
     }
 
+    private void refundRateLimit(CommandDescriptor command, CommandSender sender) {
+        if (command.cooldown == null && command.rateLimit == null) {
+            return;
+        }
+        Object key = Senders.key(sender);
+        if (command.cooldown != null) {
+            command.cooldown.refund(key);
+        }
+        if (command.rateLimit != null) {
+            command.rateLimit.refund(key);
+        }
+    }
+
+    private boolean resolveParameters(CommandDescriptor command, CommandArgs commandArgs) {
+        CommandSender sender = commandArgs.getSender();
+        if (commandArgs.size() < command.requiredParameters) {
+            sender.sendMessage("Usage: " + command.getUsage());
+            return false;
+        }
+        ParameterBinding[] parameters = command.parameters;
+        Object[] values = command.hasResolvedValues ? new Object[parameters.length] : null;
+        long[] primitives = command.hasPrimitiveValues ? new long[parameters.length] : null;
+        int count = Math.min(parameters.length, commandArgs.size());
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (!parameters[i].resolve(sender, commandArgs.get(i), values, primitives)) {
+                    sender.sendMessage("Invalid argument \"" + commandArgs.get(i) + "\" for " + parameters[i].getUsage());
+                    sender.sendMessage("Usage: " + command.getUsage());
+                    return false;
+                }
+            }
+        } catch (Throwable t) {
+            // custom resolvers are user code and fail like the command itself
+            command.getMetrics().recordInvocation(System.nanoTime() - start, !(t instanceof CommandMessageException));
+            exceptionReporter.commandFailed(command, commandArgs, t);
+            return false;
+        }
+        commandArgs.values = values;
+        commandArgs.primitives = primitives;
+        return true;
+    }
+
+    private void invoke(CommandDescriptor command, CommandArgs commandArgs) {
+        CommandInterceptor[] interceptors = command.interceptors;
+        if (interceptors != null) {
+            invokeIntercepted(command, commandArgs, interceptors);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            command.getInvoker().invoke(commandArgs);
+        } catch (Throwable t) {
+            failed = !(t instanceof CommandMessageException);
+            exceptionReporter.commandFailed(command, commandArgs, t);
+        } finally {
+            command.getMetrics().recordInvocation(System.nanoTime() - start, failed);
+            release(command);
+        }
+    }
+
+    private void invokeIntercepted(CommandDescriptor command, CommandArgs commandArgs, CommandInterceptor[] interceptors) {
+        long start = System.nanoTime();
+        boolean failed = false;
+        boolean cancelled = false;
+        int entered = 0;
+        try {
+            while (entered < interceptors.length) {
+                if (!interceptors[entered].before(command, commandArgs)) {
+                    cancelled = true;
+                    return;
+                }
+                entered++;
+            }
+            Object result = command.getInvoker().invoke(commandArgs);
+            for (int i = interceptors.length - 1; i >= 0; i--) {
+                interceptors[i].after(command, commandArgs, result);
+            }
+        } catch (Throwable t) {
+            failed = !(t instanceof CommandMessageException);
+            boolean handled = false;
+            for (int i = entered - 1; i >= 0 && !handled; i--) {
+                try {
+                    handled = interceptors[i].onError(command, commandArgs, t);
+                } catch (Throwable e) {
+                    t.addSuppressed(e);
+                }
+            }
+            if (!handled) {
+                exceptionReporter.commandFailed(command, commandArgs, t);
+            }
+        } finally {
+            // a cancelled execution never reached the handler
+            if (cancelled) {
+                command.getMetrics().recordCancelled();
+            } else {
+                command.getMetrics().recordInvocation(System.nanoTime() - start, failed);
+            }
+            release(command);
+        }
+    }
+
+    private void release(CommandDescriptor command) {
+        if (command.concurrencyLimit != null) {
+            command.concurrencyLimit.release();
+        }
+    }
+
+    private static final class GlobalInterceptor {
+        private final CommandInterceptor interceptor;
+        private final Predicate<CommandDescriptor> filter;
+
+        GlobalInterceptor(CommandInterceptor interceptor, Predicate<CommandDescriptor> filter) {
+            this.interceptor = interceptor;
+            this.filter = filter;
+        }
+    }
+
+    private class AsyncCommandTask implements Runnable {
+        private final CommandDescriptor command;
+        private final CommandArgs commandArgs;
+
+        AsyncCommandTask(CommandDescriptor command, CommandArgs commandArgs) {
+            this.command = command;
+            this.commandArgs = commandArgs;
+        }
+
+        @Override
+        public void run() {
+            invoke(command, commandArgs);
+        }
+    }
+
     /**
-     * Registers the commands and tab completers from the given object
+     * Registers the commands and tab completers from the given object. Registering an object again replaces its
+     * commands and tab completers. Every call publishes a new registry, use {@link #registerCommands(Collection)} to
+     * register many objects at once.
      *
      * @param obj The object the command and tab completers are in
      */
     public void registerCommands(Object obj) {
+        registerCommands(Collections.singletonList(obj));
+    }
+
+    /**
+     * Registers the commands and tab completers from many objects at once. The command tree is built first and all
+     * new commands are then added to the Bukkit command map in a single pass. Commands that are dispatched or tab
+     * completed on other threads in the meantime see either none or all of the new commands. Objects that are already
+     * registered get their commands and tab completers replaced.
+     *
+     * @param handlers The objects the command and tab completers are in
+     */
+    public void registerCommands(Collection<?> handlers) {
+        synchronized (registryLock) {
+            Set<Object> unique = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            List<CommandDescriptor> newCommands = new ArrayList<>();
+            List<CompleterDescriptor> newCompleters = new ArrayList<>();
+            for (Object handler : handlers) {
+                if (unique.add(handler)) {
+                    scanHandler(handler, newCommands, newCompleters);
+                }
+            }
+            RegistrySnapshot current = registry.get();
+            RegistrySnapshot base = current.without(unique);
+            commit(base, newCommands, newCompleters);
+            if (base != current) {
+                removeUnusedRootCommands();
+                completionCache.clear();
+            }
+        }
+    }
+
+    /**
+     * Registers the commands and tab completers of all classes in a package of the plugin jar. Every class with
+     * {@link Command} or {@link Completer} methods is created with its public no-argument constructor.
+     *
+     * @param packageName The package name (e.g. "de.keyle.mypet.commands"). Sub packages are included
+     */
+    public void registerPackage(String packageName) {
+        registerCommands(createHandlers(packageName));
+    }
+
+    /**
+     * Removes all commands and tab completers of the given object. Bukkit commands that are not used anymore are
+     * removed from the Bukkit command map.
+     *
+     * @param obj The object the command and tab completers are in
+     */
+    public void unregisterCommands(Object obj) {
+        synchronized (registryLock) {
+            registry.set(registry.get().without(Collections.singletonList(obj)));
+            removeUnusedRootCommands();
+            completionCache.clear();
+        }
+    }
+
+    /**
+     * Removes all commands and tab completers registered by this framework
+     */
+    public void unregisterAll() {
+        synchronized (registryLock) {
+            registry.set(RegistrySnapshot.EMPTY);
+            removeUnusedRootCommands();
+            completionCache.clear();
+        }
+    }
+
+    /**
+     * Replaces all registered commands and tab completers with the ones from the given objects. Bukkit commands that
+     * are still used are kept, so the Bukkit command map only changes for added or removed root commands.
+     *
+     * @param handlers The objects the command and tab completers are in
+     */
+    public void reload(Collection<?> handlers) {
+        synchronized (registryLock) {
+            List<CommandDescriptor> newCommands = new ArrayList<>();
+            List<CompleterDescriptor> newCompleters = new ArrayList<>();
+            for (Object handler : handlers) {
+                scanHandler(handler, newCommands, newCompleters);
+            }
+            for (org.bukkit.command.Command command : rootCommands.values()) {
+                if (command instanceof BukkitCommand) {
+                    command.setDescription("");
+                    command.setUsage("");
+                }
+            }
+            // the old commands stay usable until the new snapshot is published
+            commit(RegistrySnapshot.EMPTY, newCommands, newCompleters);
+            removeUnusedRootCommands();
+            completionCache.clear();
+        }
+    }
+
+    private void scanHandler(Object obj, List<CommandDescriptor> newCommands, List<CompleterDescriptor> newCompleters) {
+        if (registerGenerated(obj, newCommands, newCompleters)) {
+            return;
+        }
         for (Method method : obj.getClass().getMethods()) {
             if (method.getAnnotation(Command.class) != null) {
-                Command command = method.getAnnotation(Command.class);
-                if (method.getParameterTypes().length > 1 || method.getParameterTypes()[0] != CommandArgs.class) {
+                if (method.getParameterTypes().length == 0 || method.getParameterTypes()[0] != CommandArgs.class) {
                     printMessage("Unable to register command \"" + method.getName() + "\". Unexpected method arguments");
                     continue;
                 }
-                registerCommand(command, command.name(), method, obj);
-                for (String alias : command.aliases()) {
-                    registerCommand(command, alias, method, obj);
-                }
+                addCommand(obj, method, newCommands);
             } else if (method.getAnnotation(Completer.class) != null) {
-                Completer completerInfo = method.getAnnotation(Completer.class);
                 if (method.getParameterTypes().length > 1 || method.getParameterTypes().length == 0 || method.getParameterTypes()[0] != CommandArgs.class) {
                     printMessage("Unable to register tab completer " + method.getName() + ". Unexpected method arguments");
                     continue;
                 }
-                if (method.getReturnType() != List.class) {
+                if (method.getReturnType() != List.class && method.getReturnType() != CompletableFuture.class) {
                     printMessage("Unable to register tab completer " + method.getName() + ". Unexpected return type");
                     continue;
                 }
-                registerCompleter(completerInfo.name(), method, obj);
-                for (String alias : completerInfo.aliases()) {
-                    registerCompleter(alias, method, obj);
+                Completer completer = method.getAnnotation(Completer.class);
+                addCompleter(obj, new CommandRegistry.MethodReference(method), completer, method.getReturnType() == CompletableFuture.class, Invokers.bind(method, obj), newCompleters);
+            }
+        }
+    }
+
+    /**
+     * Registers a handler through the {@link CommandRegistry} generated by the annotation processor.
+     * The method signatures were already validated at compile time and the annotation values are passed by the
+     * registry, so no reflection is needed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean registerGenerated(Object obj, List<CommandDescriptor> newCommands, List<CompleterDescriptor> newCompleters) {
+        String className = obj.getClass().getName();
+        int packageEnd = className.lastIndexOf('.') + 1;
+        String registryName = className.substring(0, packageEnd) + className.substring(packageEnd).replace('$', '_') + CommandRegistry.SUFFIX;
+        CommandRegistry<Object> registry;
+        try {
+            Class<?> registryClass = Class.forName(registryName, true, obj.getClass().getClassLoader());
+            if (!CommandRegistry.class.isAssignableFrom(registryClass)) {
+                return false;
+            }
+            registry = (CommandRegistry<Object>) registryClass.getConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            printMessage("Unable to load the command registry " + registryName + ". " + e);
+            return false;
+        }
+        final List<CommandDescriptor> generatedCommands = new ArrayList<>();
+        final List<CompleterDescriptor> generatedCompleters = new ArrayList<>();
+        try {
+            registry.register(obj, new CommandRegistry.Registrar() {
+                @Override
+                public void command(CommandRegistry.MethodReference method, Command command, Intercept classIntercept, Intercept methodIntercept, String[] parameterNames, boolean[] optionalParameters, CommandInvoker invoker) {
+                    ParameterBinding[] parameters;
+                    try {
+                        parameters = ParameterBinding.bind(method.getParameterTypes(), parameterNames, optionalParameters, argumentResolvers);
+                    } catch (IllegalArgumentException e) {
+                        printMessage("Unable to register command \"" + method.getName() + "\". " + e.getMessage());
+                        return;
+                    }
+                    addCommand(obj, method, command, classIntercept, methodIntercept, parameters, invoker, generatedCommands);
+                }
+
+                @Override
+                public void completer(CommandRegistry.MethodReference method, Completer completer, boolean async, CommandInvoker invoker) {
+                    addCompleter(obj, method, completer, async, invoker, generatedCompleters);
+                }
+            });
+        } catch (LinkageError e) {
+            printMessage("The command registry " + registryName + " is outdated. " + e);
+            return false;
+        }
+        newCommands.addAll(generatedCommands);
+        newCompleters.addAll(generatedCompleters);
+        return true;
+    }
+
+    private void addCommand(Object obj, Method method, List<CommandDescriptor> newCommands) {
+        ParameterBinding[] parameters;
+        try {
+            parameters = ParameterBinding.bind(method, argumentResolvers);
+        } catch (IllegalArgumentException e) {
+            printMessage("Unable to register command \"" + method.getName() + "\". " + e.getMessage());
+            return;
+        }
+        addCommand(obj, new CommandRegistry.MethodReference(method), method.getAnnotation(Command.class), method.getDeclaringClass().getAnnotation(Intercept.class), method.getAnnotation(Intercept.class), parameters, Invokers.bind(method, obj, parameters), newCommands);
+    }
+
+    private void addCommand(Object obj, CommandRegistry.MethodReference method, Command command, Intercept classIntercept, Intercept methodIntercept, ParameterBinding[] parameters, CommandInvoker invoker, List<CommandDescriptor> newCommands) {
+        ArgumentTokenizer.Flag[] flags;
+        List<CommandInterceptor> interceptors = new ArrayList<>();
+        try {
+            flags = ArgumentTokenizer.parseFlags(command.flags());
+            addInterceptors(classIntercept, interceptors);
+            addInterceptors(methodIntercept, interceptors);
+        } catch (IllegalArgumentException e) {
+            printMessage("Unable to register command \"" + method.getName() + "\". " + e.getMessage());
+            return;
+        }
+        newCommands.add(new CommandDescriptor(command, method, obj, invoker, parameters, flags, interceptors.toArray(new CommandInterceptor[interceptors.size()])));
+    }
+
+    private void addInterceptors(Intercept intercept, List<CommandInterceptor> interceptors) {
+        if (intercept == null) {
+            return;
+        }
+        for (Class<? extends CommandInterceptor> type : intercept.value()) {
+            CommandInterceptor interceptor = annotatedInterceptors.get(type);
+            if (interceptor == null) {
+                try {
+                    interceptor = type.getConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    throw new IllegalArgumentException("Unable to create interceptor " + type.getName() + ". A public constructor without arguments is required");
                 }
+                annotatedInterceptors.put(type, interceptor);
+            }
+            interceptors.add(interceptor);
+        }
+    }
+
+    private void composeInterceptors(CommandDescriptor command) {
+        List<CommandInterceptor> chain = new ArrayList<>();
+        for (GlobalInterceptor global : globalInterceptors) {
+            if (global.filter == null || global.filter.test(command)) {
+                chain.add(global.interceptor);
+            }
+        }
+        Collections.addAll(chain, command.annotatedInterceptors);
+        command.interceptors = chain.isEmpty() ? null : chain.toArray(new CommandInterceptor[chain.size()]);
+    }
+
+    private void addCompleter(Object obj, CommandRegistry.MethodReference method, Completer completer, boolean async, CommandInvoker invoker, List<CompleterDescriptor> newCompleters) {
+        newCompleters.add(new CompleterDescriptor(completer.name(), Arrays.asList(completer.aliases()), completer.cacheTime(), completer.ignoreCase(), async, method, obj, invoker));
+    }
+
+    private List<Object> createHandlers(String packageName) {
+        List<Object> handlers = new ArrayList<>();
+        if (plugin == null) {
+            printMessage("Unable to scan package " + packageName + ". There is no plugin");
+            return handlers;
+        }
+        CodeSource codeSource = plugin.getClass().getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            printMessage("Unable to scan package " + packageName + ". The plugin has no code source");
+            return handlers;
+        }
+        List<Class<?>> classes;
+        try {
+            classes = new HandlerScanner(plugin.getClass().getClassLoader(), codeSource.getLocation()).findHandlers(packageName);
+        } catch (IOException | SecurityException e) {
+            printMessage("Unable to scan package " + packageName + ". " + e.getMessage());
+            return handlers;
+        }
+        for (Class<?> clazz : classes) {
+            try {
+                handlers.add(clazz.getConstructor().newInstance());
+            } catch (ReflectiveOperationException | LinkageError e) {
+                printMessage("Unable to create command handler " + clazz.getName() + ". A public constructor without arguments is required");
+            }
+        }
+        return handlers;
+    }
+
+    private void commit(RegistrySnapshot base, List<CommandDescriptor> newCommands, List<CompleterDescriptor> newCompleters) {
+        for (CommandDescriptor descriptor : newCommands) {
+            composeInterceptors(descriptor);
+        }
+        registry.set(base.with(newCommands, newCompleters));
+        List<org.bukkit.command.Command> newRootCommands = new ArrayList<>();
+        for (CommandDescriptor descriptor : newCommands) {
+            registerCommand(descriptor, descriptor.getName(), newRootCommands);
+            for (String alias : descriptor.getAliases()) {
+                registerCommand(descriptor, alias, newRootCommands);
+            }
+        }
+        for (CompleterDescriptor descriptor : newCompleters) {
+            registerCompleter(descriptor, descriptor.getName(), newRootCommands);
+            for (String alias : descriptor.getAliases()) {
+                registerCompleter(descriptor, alias, newRootCommands);
             }
         }
+        if (!newRootCommands.isEmpty()) {
+            platform.registerCommands(newRootCommands);
+        }
     }
 
-    private void registerCommand(Command commandInfo, String label, Method method, Object obj) {
-        commandMap.put(label.toLowerCase(), new SimpleEntry<>(method, obj));
+    private void registerCommand(CommandDescriptor descriptor, String label, List<org.bukkit.command.Command> newRootCommands) {
         String commandName = label.split("\\.")[0].toLowerCase();
 
-        org.bukkit.command.Command command = bukkitCommandMap.getCommand(commandName);
-        if (command == null) {
-            command = new BukkitCommand(commandName, plugin);
-            bukkitCommandMap.register(plugin.getName(), command);
+        org.bukkit.command.Command command = getRootCommand(commandName, newRootCommands);
+        if (!descriptor.getDescription().isEmpty() && commandName.equalsIgnoreCase(label)) {
+            command.setDescription(descriptor.getDescription());
         }
-        if (!commandInfo.description().isEmpty() && commandName.equals(label)) {
-            command.setDescription(commandInfo.description());
+        if (!descriptor.getUsage().isEmpty() && commandName.equalsIgnoreCase(label)) {
+            command.setUsage(descriptor.getUsage());
         }
-        if (!commandInfo.usage().isEmpty() && commandName.equals(label)) {
-            command.setUsage(commandInfo.usage());
+        if (hasCompletions(descriptor) || !commandName.equalsIgnoreCase(label)) {
+            // typed parameters and flags are completed by the command and subcommands from the command tree
+            getBukkitCompleter(command);
         }
     }
 
-    private void registerCompleter(String commandName, Method method, Object obj) {
-        String origCommandName = commandName;
-        commandName = commandName.split("\\.")[0].toLowerCase();
-        org.bukkit.command.Command command = bukkitCommandMap.getCommand(commandName);
+    private static boolean hasCompletions(CommandDescriptor descriptor) {
+        if (descriptor.flags != null) {
+            return true;
+        }
+        for (ParameterBinding parameter : descriptor.parameters) {
+            if (parameter.isCompletable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerCompleter(CompleterDescriptor descriptor, String label, List<org.bukkit.command.Command> newRootCommands) {
+        String commandName = label.split("\\.")[0].toLowerCase();
+        org.bukkit.command.Command command = getRootCommand(commandName, newRootCommands);
+
+        if (getBukkitCompleter(command) == null && command instanceof PluginCommand) {
+            printMessage("Unable to register tab completer " + descriptor.getMethod().getName() + ". A tab completer is already registered for this command!");
+        }
+    }
 
-        if (bukkitCommandMap.getCommand(commandName) == null) {
-            command = new BukkitCommand(commandName, plugin);
-            bukkitCommandMap.register(plugin.getName(), command);
+    private org.bukkit.command.Command getRootCommand(String commandName, List<org.bukkit.command.Command> newRootCommands) {
+        org.bukkit.command.Command command = rootCommands.get(commandName);
+        if (command == null) {
+            command = platform.getCommand(commandName);
+            if (command == null) {
+                command = platform.createCommand(commandName, this);
+                newRootCommands.add(command);
+            }
+            rootCommands.put(commandName, command);
         }
+        return command;
+    }
+
+    private BukkitCompleter getBukkitCompleter(org.bukkit.command.Command command) {
         if (command instanceof BukkitCommand) {
             BukkitCommand bukkitCommand = (BukkitCommand) command;
             if (bukkitCommand.completer == null) {
-                bukkitCommand.completer = new BukkitCompleter();
+                bukkitCommand.completer = new BukkitCompleter(registry, platform, completionCache, permissionCache, argsPool, exceptionReporter, recorder);
             }
-            bukkitCommand.completer.addCompleter(origCommandName, method, obj);
+            return bukkitCommand.completer;
         } else if (command instanceof PluginCommand) {
-            try {
+            PluginCommand pluginCommand = (PluginCommand) command;
+            if (pluginCommand.getTabCompleter() == null) {
+                BukkitCompleter completer = new BukkitCompleter(registry, platform, completionCache, permissionCache, argsPool, exceptionReporter, recorder);
+                pluginCommand.setTabCompleter(completer);
+                return completer;
+            } else if (pluginCommand.getTabCompleter() instanceof BukkitCompleter) {
+                return (BukkitCompleter) pluginCommand.getTabCompleter();
+            }
+        }
+        return null;
+    }
+
+    private void removeUnusedRootCommands() {
+        CommandTree commandTree = registry.get().tree;
+        Iterator<Map.Entry<String, org.bukkit.command.Command>> iterator = rootCommands.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, org.bukkit.command.Command> entry = iterator.next();
+            if (commandTree.get(entry.getKey()) != null) {
+                continue;
+            }
+            org.bukkit.command.Command command = entry.getValue();
+            if (command instanceof BukkitCommand) {
+                platform.unregisterCommand(command);
+            } else if (command instanceof PluginCommand) {
                 PluginCommand pluginCommand = (PluginCommand) command;
-                Field field = pluginCommand.getClass().getDeclaredField("completer");
-                field.setAccessible(true);
-                if (field.get(pluginCommand) == null) {
-                    BukkitCompleter completer = new BukkitCompleter();
-                    completer.addCompleter(origCommandName, method, obj);
-                    field.set(pluginCommand, completer);
-                } else if (field.get(pluginCommand) instanceof BukkitCompleter) {
-                    BukkitCompleter completer = (BukkitCompleter) field.get(pluginCommand);
-                    completer.addCompleter(origCommandName, method, obj);
-                } else {
-                    printMessage("Unable to register tab completer " + method.getName() + ". A tab completer is already registered for this command!");
+                if (pluginCommand.getTabCompleter() instanceof BukkitCompleter && ((BukkitCompleter) pluginCommand.getTabCompleter()).isBackedBy(registry)) {
+                    pluginCommand.setTabCompleter(null);
                 }
-            } catch (Exception ex) {
-                ex.printStackTrace();
             }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets all registered commands
+     *
+     * @return An unmodifiable list of all command descriptors in registration order
+     */
+    public List<CommandDescriptor> getCommands() {
+        return registry.get().commands;
+    }
+
+    /**
+     * Gets the command registered under a dotted name or alias (e.g. "pet.info")
+     *
+     * @param name The dotted name
+     * @return The command descriptor or null if there is no command with this name
+     */
+    public CommandDescriptor getCommand(String name) {
+        CommandNode node = registry.get().tree.get(name);
+        return node != null ? node.command : null;
+    }
+
+    /**
+     * Gets all registered tab completers
+     *
+     * @return An unmodifiable list of all completer descriptors in registration order
+     */
+    public List<CompleterDescriptor> getCompleters() {
+        return registry.get().completers;
+    }
+
+    /**
+     * Passes the metrics of all registered commands and tab completers to an exporter
+     *
+     * @param exporter The exporter
+     */
+    public void exportMetrics(MetricsExporter exporter) {
+        RegistrySnapshot snapshot = registry.get();
+        for (CommandDescriptor command : snapshot.commands) {
+            exporter.export(command.getMetrics());
+        }
+        for (CompleterDescriptor completer : snapshot.completers) {
+            exporter.export(completer.getMetrics());
+        }
+    }
+
+    /**
+     * Resets the metrics of all registered commands and tab completers
+     */
+    public void resetMetrics() {
+        RegistrySnapshot snapshot = registry.get();
+        for (CommandDescriptor command : snapshot.commands) {
+            command.getMetrics().reset();
+        }
+        for (CompleterDescriptor completer : snapshot.completers) {
+            completer.getMetrics().reset();
+        }
+    }
+
+    /**
+     * Sends a help page to a sender. The help lists the usage and description of all commands below a path that the
+     * sender is allowed to use. Pages are cached per permission combination until the registered commands change.
+     *
+     * @param sender The sender
+     * @param path   The dotted command path (e.g. "pet") or an empty string for all commands
+     * @param page   The page starting at 1
+     */
+    public void sendHelp(CommandSender sender, String path, int page) {
+        for (String line : registry.get().help.getPage(sender, permissionCache, path, page)) {
+            sender.sendMessage(line);
+        }
+    }
+
+    /**
+     * Starts recording the phase timings of every dispatch. Dispatches that take at least the threshold are kept in
+     * a ring buffer of the last {@link #DEFAULT_TRACE_CAPACITY} slow dispatches, which replaces the previous one.
+     *
+     * @param thresholdMillis The minimum duration of a kept dispatch in milliseconds, 0 keeps all dispatches
+     */
+    public void enableTracing(long thresholdMillis) {
+        DispatchTracer tracer = new DispatchTracer(TimeUnit.MILLISECONDS.toNanos(thresholdMillis), DEFAULT_TRACE_CAPACITY);
+        lastTracer = tracer;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Stops recording dispatches. The recorded traces are kept until tracing is enabled again.
+     */
+    public void disableTracing() {
+        tracer = null;
+    }
+
+    /**
+     * Checks if dispatches are traced
+     *
+     * @return true if tracing is enabled
+     */
+    public boolean isTracing() {
+        return tracer != null;
+    }
+
+    /**
+     * Gets the recorded slow dispatches. Use {@link DispatchTrace#toJson(List)} or
+     * {@link DispatchTrace#toFoldedStacks(List)} to export them.
+     *
+     * @return The traces, oldest first
+     */
+    public List<DispatchTrace> getTraces() {
+        DispatchTracer tracer = lastTracer;
+        return tracer != null ? tracer.getTraces() : Collections.<DispatchTrace>emptyList();
+    }
+
+    /**
+     * Starts appending all dispatched commands and tab completions to a log file. The log can be replayed with the
+     * load generator of the benchmark module. A previous recording is stopped.
+     *
+     * @param file The log file
+     * @throws IOException if the file can not be opened
+     */
+    public void startRecording(File file) throws IOException {
+        CommandRecorder previous = recorder.getAndSet(new CommandRecorder(file, platform.getLogger()));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stops recording and closes the log file after the remaining entries were written
+     */
+    public void stopRecording() {
+        CommandRecorder previous = recorder.getAndSet(null);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Gets the current recorder
+     *
+     * @return The recorder or null if no log is recorded
+     */
+    public CommandRecorder getRecorder() {
+        return recorder.get();
+    }
+
+    /**
+     * Registers an interceptor for all commands. Interceptors run in registration order.
+     *
+     * @param interceptor The interceptor
+     */
+    public void registerInterceptor(CommandInterceptor interceptor) {
+        registerInterceptor(interceptor, null);
+    }
+
+    /**
+     * Registers an interceptor for all commands that match a filter. The filter is evaluated once per command when
+     * the interceptor or the command is registered, not on every invocation.
+     *
+     * @param interceptor The interceptor
+     * @param filter      The filter or null for all commands
+     */
+    public void registerInterceptor(CommandInterceptor interceptor, Predicate<CommandDescriptor> filter) {
+        synchronized (registryLock) {
+            globalInterceptors.add(new GlobalInterceptor(interceptor, filter));
+            for (CommandDescriptor command : registry.get().commands) {
+                composeInterceptors(command);
+            }
+        }
+    }
+
+    /**
+     * Removes an interceptor that was registered for all commands
+     *
+     * @param interceptor The interceptor
+     */
+    public void unregisterInterceptor(CommandInterceptor interceptor) {
+        synchronized (registryLock) {
+            globalInterceptors.removeIf(global -> global.interceptor == interceptor);
+            for (CommandDescriptor command : registry.get().commands) {
+                composeInterceptors(command);
+            }
+        }
+    }
+
+    /**
+     * Registers a resolver for a parameter type of {@link Command} methods. Resolvers have to be registered before
+     * the commands that use them.
+     *
+     * @param type     The parameter type
+     * @param resolver The resolver
+     * @param <T>      The parameter type
+     */
+    public <T> void registerResolver(Class<T> type, ArgumentResolver<T> resolver) {
+        synchronized (registryLock) {
+            argumentResolvers.register(type, resolver);
         }
     }
 
+    /**
+     * Sets the executor used for commands with {@link Command#async()} enabled.
+     * By default a virtual thread executor is used when the JVM supports it, otherwise a small daemon thread pool.
+     *
+     * @param executor The executor. It is not shut down by the framework
+     */
+    public void setAsyncExecutor(ExecutorService executor) {
+        asyncDispatcher.setExecutor(executor);
+    }
+
+    /**
+     * Sets the maximum number of asynchronous commands that can run at the same time across all commands
+     *
+     * @param maxTasks The limit
+     */
+    public void setMaxAsyncTasks(int maxTasks) {
+        asyncDispatcher.setMaxTasks(maxTasks);
+    }
+
+    /**
+     * Sets the maximum number of cached tab completion results. The least recently used results are evicted first.
+     *
+     * @param maxSize The maximum number of cached results
+     */
+    public void setCompletionCacheSize(int maxSize) {
+        completionCache.setMaxSize(maxSize);
+    }
+
+    /**
+     * Removes all cached tab completions of a sender
+     *
+     * @param sender The sender
+     */
+    public void invalidateCompletions(CommandSender sender) {
+        completionCache.invalidate(Senders.key(sender));
+    }
+
+    /**
+     * Removes all cached tab completions
+     */
+    public void clearCompletionCache() {
+        completionCache.clear();
+    }
+
+    /**
+     * Sets how long permission decisions are cached per sender. Defaults to one second, 0 disables the cache.
+     *
+     * @param millis The cache time in milliseconds
+     */
+    public void setPermissionCacheTime(long millis) {
+        permissionCache.setCacheTime(millis);
+    }
+
+    /**
+     * Removes all cached permission decisions of a sender. Call this when the permissions of a player change.
+     *
+     * @param sender The sender
+     */
+    public void invalidatePermissions(CommandSender sender) {
+        permissionCache.invalidate(Senders.key(sender));
+    }
+
+    /**
+     * Removes all cached permission decisions of a player
+     *
+     * @param uuid The UUID of the player
+     */
+    public void invalidatePermissions(UUID uuid) {
+        permissionCache.invalidate(uuid);
+    }
+
+    /**
+     * Removes all cached permission decisions
+     */
+    public void clearPermissionCache() {
+        permissionCache.clear();
+    }
+
+    /**
+     * Sets the handler for exceptions thrown by commands, tab completers and argument resolvers
+     *
+     * @param handler The handler or null to restore the default handler
+     */
+    public void setExceptionHandler(CommandExceptionHandler handler) {
+        exceptionReporter.setHandler(handler != null ? handler : defaultExceptionHandler);
+    }
+
+    /**
+     * Gets the handler for exceptions thrown by commands, tab completers and argument resolvers. Custom handlers can
+     * delegate to the default handler to keep its logging.
+     *
+     * @return The current handler
+     */
+    public CommandExceptionHandler getExceptionHandler() {
+        return exceptionReporter.getHandler();
+    }
+
+    /**
+     * Shuts down the default async executor and stops recording. Should be called in the onDisable method of your
+     * JavaPlugin class
+     */
+    public void shutdown() {
+        asyncDispatcher.shutdown();
+        defaultExceptionHandler.shutdown();
+        stopRecording();
+        argsPool.clear();
+    }
+
     /**
      * Method that can be overridden to set an output for messages thrown by this framework
      *
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+/**
+ * Runs code around the invocation of commands, e.g. for logging, auditing or world restrictions.
+ * Interceptors are registered for all commands with {@link CommandFramework#registerInterceptor(CommandInterceptor)}
+ * or for single commands and handler classes with {@link Intercept}.
+ * <p>
+ * {@link #before} is called in registration order, {@link #after} and {@link #onError} in reverse order.
+ */
+public interface CommandInterceptor {
+    /**
+     * Called before the handler method is invoked
+     *
+     * @param command The command
+     * @param args    The arguments of the invocation
+     * @return false to cancel the invocation. The interceptor has to inform the sender, the cancellation is counted
+     * by {@link CommandMetrics#getCancelled()} instead of the invocations
+     */
+    default boolean before(CommandDescriptor command, CommandArgs args) {
+        return true;
+    }
+
+    /**
+     * Called after the handler method returned
+     *
+     * @param command The command
+     * @param args    The arguments of the invocation
+     * @param result  The value returned by the handler or null for void methods
+     */
+    default void after(CommandDescriptor command, CommandArgs args, Object result) {
+    }
+
+    /**
+     * Called when the handler method or another interceptor threw an exception. Only interceptors whose
+     * {@link #before} method passed are called.
+     *
+     * @param command The command
+     * @param args    The arguments of the invocation
+     * @param error   The exception
+     * @return true if the exception was handled and should not be reported
+     */
+    default boolean onError(CommandDescriptor command, CommandArgs args, Throwable error) {
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+/**
+ * A handler method that was bound to its instance once at registration time.
+ */
+public interface CommandInvoker {
+    /**
+     * Calls the bound handler method
+     *
+     * @param args The arguments passed to the handler
+     * @return The value returned by the handler or null for void methods
+     * @throws Throwable Any exception thrown by the handler, unwrapped
+     */
+    Object invoke(CommandArgs args) throws Throwable;
+}
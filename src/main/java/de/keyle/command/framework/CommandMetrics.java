@@ -0,0 +1,147 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation counters and latencies of a single registered command or tab completer.
+ * All counters are striped, so recording is cheap enough to stay enabled in production.
+ */
+public class CommandMetrics {
+    private final String name;
+    private final boolean completion;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder permissionDenials = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    CommandMetrics(String name, boolean completion) {
+        this.name = name;
+        this.completion = completion;
+    }
+
+    void recordInvocation(long nanos, boolean failed) {
+        invocations.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(nanos);
+    }
+
+    void recordPermissionDenial() {
+        permissionDenials.increment();
+    }
+
+    void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    void recordCancelled() {
+        cancelled.increment();
+    }
+
+    /**
+     * Gets the dotted name of the command
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether these metrics belong to a tab completer instead of a command
+     *
+     * @return true for tab completers
+     */
+    public boolean isCompletion() {
+        return completion;
+    }
+
+    /**
+     * Gets the number of handler invocations
+     *
+     * @return The number of invocations
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    /**
+     * Gets the number of handler invocations that threw an exception
+     *
+     * @return The number of errors
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the number of executions that were denied because the sender was missing the permission
+     *
+     * @return The number of denials
+     */
+    public long getPermissionDenials() {
+        return permissionDenials.sum();
+    }
+
+    /**
+     * Gets the number of executions that were rejected by a cooldown or rate limit
+     *
+     * @return The number of rejected executions
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Gets the number of executions that an interceptor cancelled before the handler was invoked
+     *
+     * @return The number of cancelled executions
+     */
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    /**
+     * Gets the latency histogram of all handler invocations
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Resets all counters
+     */
+    public void reset() {
+        invocations.reset();
+        errors.reset();
+        permissionDenials.reset();
+        rateLimited.reset();
+        cancelled.reset();
+        latency.reset();
+    }
+}
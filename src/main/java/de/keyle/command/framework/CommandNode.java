@@ -0,0 +1,194 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+class CommandNode {
+    private final String name;
+    private final int depth;
+    private final NavigableMap<String, CommandNode> children = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    CommandDescriptor command;
+    CompleterDescriptor completer;
+    // distinct permissions of all commands in this subtree, null if the subtree has no commands
+    private String[] permissions;
+    private BkTree<CommandNode> childIndex;
+
+    CommandNode(String name, int depth) {
+        this.name = name;
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the name of this node (a single label token)
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of arguments consumed by this node. Root nodes have a depth of 0.
+     *
+     * @return The depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Looks up a direct child of this node. The lookup ignores case and does not allocate.
+     *
+     * @param name The token to look up
+     * @return The child or null if there is none
+     */
+    public CommandNode getChild(String name) {
+        return children.get(name);
+    }
+
+    /**
+     * Gets the direct children of this node in alphabetical order
+     *
+     * @return The children
+     */
+    Collection<CommandNode> getChildren() {
+        return children.values();
+    }
+
+    CommandNode getOrCreateChild(String name) {
+        CommandNode child = children.get(name);
+        if (child == null) {
+            child = new CommandNode(name.toLowerCase(), depth + 1);
+            children.put(child.name, child);
+        }
+        return child;
+    }
+
+    /**
+     * Copies this subtree, the copy can be changed without affecting this node. The index of the copy has to be built
+     * with {@link #index()}.
+     *
+     * @return The copy
+     */
+    CommandNode copy() {
+        CommandNode copy = new CommandNode(name, depth);
+        copy.command = command;
+        copy.completer = completer;
+        for (CommandNode child : children.values()) {
+            copy.children.put(child.name, child.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Collects the permissions of all commands in this subtree and builds the edit distance index of the children.
+     * Has to be called after the subtree was changed.
+     */
+    void index() {
+        Set<String> collected = new LinkedHashSet<>();
+        BkTree<CommandNode> index = new BkTree<>();
+        if (command != null) {
+            collected.add(command.getPermission());
+        }
+        for (CommandNode child : children.values()) {
+            child.index();
+            if (child.permissions != null) {
+                Collections.addAll(collected, child.permissions);
+                index.add(child.name, child);
+            }
+        }
+        // an unrestricted command makes the whole subtree visible
+        permissions = collected.isEmpty() ? null : collected.contains("") ? new String[]{""} : collected.toArray(new String[0]);
+        childIndex = index.size() > 0 ? index : null;
+    }
+
+    /**
+     * Checks if the sender can use at least one command in this subtree
+     *
+     * @param sender      The sender
+     * @param permissions The permission cache
+     * @return true if the node should be suggested to the sender
+     */
+    boolean isVisible(CommandSender sender, PermissionCache permissions) {
+        if (this.permissions == null) {
+            return false;
+        }
+        for (String permission : this.permissions) {
+            if (permissions.hasPermission(sender, permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the names of all visible children that start with a prefix (ignoring case) in alphabetical order
+     *
+     * @param sender      The sender
+     * @param permissions The permission cache
+     * @param prefix      The prefix
+     * @param names       The list the names are added to
+     */
+    void completeChildren(CommandSender sender, PermissionCache permissions, String prefix, List<String> names) {
+        for (CommandNode child : children.tailMap(prefix, true).values()) {
+            if (!child.name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (child.isVisible(sender, permissions)) {
+                names.add(child.name);
+            }
+        }
+    }
+
+    /**
+     * Gets the names of visible children that are similar to a token, ordered by edit distance and name
+     *
+     * @param sender      The sender
+     * @param permissions The permission cache
+     * @param token       The token
+     * @param limit       The maximum number of names
+     * @return The names
+     */
+    List<String> suggestChildren(CommandSender sender, PermissionCache permissions, String token, int limit) {
+        if (childIndex == null) {
+            return Collections.emptyList();
+        }
+        String query = token.toLowerCase();
+        // allow one typo in short names and two in longer ones
+        int maxDistance = query.length() <= 4 ? 1 : 2;
+        List<BkTree.Match<CommandNode>> matches = new ArrayList<>();
+        childIndex.search(query, maxDistance, matches);
+        matches.sort(Comparator.<BkTree.Match<CommandNode>>comparingInt(match -> match.distance).thenComparing(match -> match.word));
+        List<String> names = new ArrayList<>(Math.min(limit, matches.size()));
+        for (BkTree.Match<CommandNode> match : matches) {
+            if (names.size() == limit) {
+                break;
+            }
+            if (match.value.isVisible(sender, permissions)) {
+                names.add(match.word);
+            }
+        }
+        return names;
+    }
+}
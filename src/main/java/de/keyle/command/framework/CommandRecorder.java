@@ -0,0 +1,240 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends dispatched commands and tab completions to a log file that can be replayed later, e.g. by the load generator
+ * of the benchmark module. Recording only puts an entry into a bounded queue, the lines are formatted and written by
+ * a background thread. Entries are dropped instead of blocking when the writer can not keep up.
+ * <p>
+ * Every line has the format {@code <timestamp>\t<command|complete>\t<sender>\t<label> <args...>}.
+ *
+ * @see CommandFramework#startRecording(File)
+ */
+public class CommandRecorder {
+    public static final int QUEUE_SIZE = 8192;
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final LongAdder dropped = new LongAdder();
+    private final File file;
+    private final Logger logger;
+    private final Writer writer;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean failed = false;
+
+    /**
+     * Opens the log file and starts the writer thread
+     *
+     * @param file   The log file. Lines are appended if it exists
+     * @param logger The logger for write errors
+     * @throws IOException if the file can not be opened
+     */
+    public CommandRecorder(File file, Logger logger) throws IOException {
+        this.file = file;
+        this.logger = logger;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 1 << 16);
+        thread = new Thread(this::write, "CommandFramework-Recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void recordCommand(CommandSender sender, String label, String[] args) {
+        record(Type.COMMAND, sender, label, args);
+    }
+
+    void recordCompletion(CommandSender sender, String label, String[] args) {
+        record(Type.COMPLETE, sender, label, args);
+    }
+
+    private void record(Type type, CommandSender sender, String label, String[] args) {
+        if (failed) {
+            return;
+        }
+        if (!queue.offer(new Entry(System.currentTimeMillis(), type, sender.getName(), label, args))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Gets the number of entries that were dropped because the queue was full
+     *
+     * @return The number of dropped entries
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Checks if writing the log file failed. A failed recorder does not accept entries anymore.
+     *
+     * @return true if the recorder failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Writes the remaining entries and closes the log file
+     */
+    public void close() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    continue;
+                }
+                batch.add(entry);
+                queue.drainTo(batch);
+                for (Entry pending : batch) {
+                    writer.write(pending.toLine());
+                    writer.write('\n');
+                }
+                batch.clear();
+                // flushed once per batch, the writer thread is idle between command bursts
+                writer.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            failed = true;
+            queue.clear();
+            logger.log(Level.SEVERE, "Unable to write the command log " + file + ", recording stopped", e);
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * The kind of a recorded entry
+     */
+    public enum Type {
+        COMMAND, COMPLETE;
+
+        private final String key = name().toLowerCase();
+    }
+
+    /**
+     * A single line of a command log
+     */
+    public static final class Entry {
+        private final long timestamp;
+        private final Type type;
+        private final String sender;
+        private final String label;
+        private final String[] args;
+
+        public Entry(long timestamp, Type type, String sender, String label, String[] args) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.sender = sender;
+            this.label = label;
+            this.args = args;
+        }
+
+        /**
+         * Parses a line of a command log
+         *
+         * @param line The line
+         * @return The entry
+         * @throws IllegalArgumentException if the line is malformed
+         */
+        public static Entry parse(String line) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Malformed command log line: " + line);
+            }
+            // keep trailing empty arguments, they are the argument that is tab completed
+            String[] tokens = fields[3].split(" ", -1);
+            String[] args = new String[tokens.length - 1];
+            System.arraycopy(tokens, 1, args, 0, args.length);
+            try {
+                return new Entry(Long.parseLong(fields[0]), Type.valueOf(fields[1].toUpperCase()), fields[2], tokens[0], args);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed command log line: " + line);
+            }
+        }
+
+        String toLine() {
+            StringBuilder line = new StringBuilder();
+            line.append(timestamp).append('\t').append(type.key).append('\t');
+            appendClean(line, sender);
+            line.append('\t');
+            appendClean(line, label);
+            for (String arg : args) {
+                line.append(' ');
+                appendClean(line, arg);
+            }
+            return line.toString();
+        }
+
+        private static void appendClean(StringBuilder line, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getSender() {
+            return sender;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String[] getArgs() {
+            return args;
+        }
+    }
+}
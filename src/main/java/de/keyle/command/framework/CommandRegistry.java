@@ -0,0 +1,124 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.lang.reflect.Method;
+
+/**
+ * A registry generated at compile time by the {@link de.keyle.command.framework.processor.CommandProcessor} for a
+ * handler class. It lists the {@link Command} and {@link Completer} methods of the handler together with their
+ * annotation values and creates invokers that call them directly. {@link CommandFramework} uses the registry instead
+ * of scanning the handler when it exists, so registering the handler needs no reflection.
+ * <p>
+ * The registry of a handler class <code>a.b.Outer.Handler</code> is named <code>a.b.Outer_Handler_CommandRegistry</code>.
+ *
+ * @param <T> The handler class
+ */
+public interface CommandRegistry<T> {
+    String SUFFIX = "_CommandRegistry";
+
+    /**
+     * Passes all command and tab completer methods of a handler to the registrar
+     *
+     * @param handler   The handler instance
+     * @param registrar The registrar
+     */
+    void register(T handler, Registrar registrar);
+
+    interface Registrar {
+        /**
+         * Adds a {@link Command} method
+         *
+         * @param method             The method
+         * @param command            The annotation of the method
+         * @param classIntercept     The {@link Intercept} annotation of the declaring class or null
+         * @param methodIntercept    The {@link Intercept} annotation of the method or null
+         * @param parameterNames     The names of the parameters after the leading {@link CommandArgs}
+         * @param optionalParameters Which of these parameters are annotated with {@link OptionalArg}
+         * @param invoker            The invoker that calls the method on the handler instance
+         */
+        void command(MethodReference method, Command command, Intercept classIntercept, Intercept methodIntercept, String[] parameterNames, boolean[] optionalParameters, CommandInvoker invoker);
+
+        /**
+         * Adds a {@link Completer} method
+         *
+         * @param method    The method
+         * @param completer The annotation of the method
+         * @param async     true if the method returns a {@link java.util.concurrent.CompletableFuture}
+         * @param invoker   The invoker that calls the method on the handler instance
+         */
+        void completer(MethodReference method, Completer completer, boolean async, CommandInvoker invoker);
+    }
+
+    /**
+     * Refers to a public handler method by its name and parameter types. The {@link Method} is looked up when it is
+     * requested for the first time.
+     */
+    final class MethodReference {
+        private final Class<?> type;
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private volatile Method method;
+
+        public MethodReference(Class<?> type, String name, Class<?>... parameterTypes) {
+            this.type = type;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+        }
+
+        MethodReference(Method method) {
+            this(method.getDeclaringClass(), method.getName(), method.getParameterTypes());
+            this.method = method;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the parameter types including the leading {@link CommandArgs}
+         *
+         * @return A copy of the parameter types
+         */
+        public Class<?>[] getParameterTypes() {
+            return parameterTypes.clone();
+        }
+
+        /**
+         * Gets the referenced method
+         *
+         * @return The method
+         * @throws IllegalStateException if the method does not exist anymore
+         */
+        public Method getMethod() {
+            Method method = this.method;
+            if (method == null) {
+                try {
+                    method = type.getMethod(name, parameterTypes);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException("The method " + name + " of " + type.getName() + " does not exist anymore", e);
+                }
+                this.method = method;
+            }
+            return method;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Prefix tree of command labels. Trees are only modified while a {@link RegistrySnapshot} is built and are read-only
+ * once the snapshot is published. Root nodes that did not change are shared between the trees of snapshots.
+ */
+class CommandTree {
+    private final TreeMap<String, CommandNode> roots;
+
+    CommandTree() {
+        roots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    /**
+     * Creates a tree that shares the root nodes of another tree. Shared roots must not be changed, the roots that are
+     * left out can be rebuilt or copied with {@link #copyRoot(CommandTree, String)}.
+     *
+     * @param base     The tree the roots are shared with
+     * @param excluded The lower case labels of the roots that are left out
+     */
+    CommandTree(CommandTree base, Set<String> excluded) {
+        // copying a sorted map takes linear time without comparisons
+        roots = new TreeMap<>(base.roots);
+        roots.keySet().removeAll(excluded);
+    }
+
+    /**
+     * Adds a copy of a root node of another tree that can be changed
+     *
+     * @param base  The tree that contains the root
+     * @param label The label of the root
+     */
+    void copyRoot(CommandTree base, String label) {
+        CommandNode root = base.roots.get(label);
+        if (root != null) {
+            roots.put(root.getName(), root.copy());
+        }
+    }
+
+    /**
+     * Gets the node for a dotted command path (e.g. "pet.info") and creates all missing nodes on the way
+     *
+     * @param path The dotted command path
+     * @return The node at the end of the path
+     */
+    public CommandNode getOrCreate(String path) {
+        String[] tokens = path.split("\\.");
+        CommandNode node = roots.get(tokens[0]);
+        if (node == null) {
+            node = new CommandNode(tokens[0].toLowerCase(), 0);
+            roots.put(node.getName(), node);
+        }
+        for (int i = 1; i < tokens.length; i++) {
+            node = node.getOrCreateChild(tokens[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Gets the node for a dotted command path
+     *
+     * @param path The dotted command path
+     * @return The node or null if the path does not exist
+     */
+    public CommandNode get(String path) {
+        String[] tokens = path.split("\\.");
+        CommandNode node = roots.get(tokens[0]);
+        for (int i = 1; i < tokens.length && node != null; i++) {
+            node = node.getChild(tokens[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Gets the root nodes in alphabetical order
+     *
+     * @return The root nodes
+     */
+    public Collection<CommandNode> getRoots() {
+        return roots.values();
+    }
+
+    /**
+     * Follows the arguments as far as they match child nodes, regardless of registered commands
+     *
+     * @param label The root label
+     * @param args  The arguments following the label
+     * @param limit The number of arguments that are used for the lookup
+     * @return The deepest matching node or null if there is no root with this label
+     */
+    public CommandNode findPath(String label, String[] args, int limit) {
+        CommandNode node = roots.get(label);
+        for (int i = 0; i < limit && node != null; i++) {
+            CommandNode child = node.getChild(args[i]);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Rebuilds the permission and suggestion index of all nodes. Has to be called after commands were added or removed.
+     */
+    public void index() {
+        for (CommandNode root : roots.values()) {
+            root.index();
+        }
+    }
+
+    /**
+     * Rebuilds the permission and suggestion index of the given roots
+     *
+     * @param labels The labels of the roots that were changed
+     */
+    void index(Set<String> labels) {
+        for (String label : labels) {
+            CommandNode root = roots.get(label);
+            if (root != null) {
+                root.index();
+            }
+        }
+    }
+
+    /**
+     * Finds the deepest node with a registered command for the given label and arguments
+     *
+     * @param label The root label
+     * @param args  The arguments following the label
+     * @return The matching node or null if no command matches
+     */
+    public CommandNode findCommand(String label, String[] args) {
+        return find(label, args, args.length, false);
+    }
+
+    /**
+     * Finds the deepest node with a registered command using only the first arguments
+     *
+     * @param label The root label
+     * @param args  The arguments following the label
+     * @param limit The number of arguments that are used for the lookup
+     * @return The matching node or null if no command matches
+     */
+    public CommandNode findCommand(String label, String[] args, int limit) {
+        return find(label, args, limit, false);
+    }
+
+    /**
+     * Finds the deepest node with a registered tab completer. The last argument is the one that is currently
+     * completed and is therefore not used for the lookup.
+     *
+     * @param label The root label
+     * @param args  The arguments following the label
+     * @return The matching node or null if no completer matches
+     */
+    public CommandNode findCompleter(String label, String[] args) {
+        return find(label, args, args.length - 1, true);
+    }
+
+    private CommandNode find(String label, String[] args, int limit, boolean completer) {
+        CommandNode node = roots.get(label);
+        CommandNode match = null;
+        int i = 0;
+        while (node != null) {
+            if ((completer ? node.completer : node.command) != null) {
+                match = node;
+            }
+            if (i >= limit) {
+                break;
+            }
+            node = node.getChild(args[i++]);
+        }
+        return match;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+/**
+ * Thrown from a {@link Command} method when the arguments are invalid. The sender gets the message (if there is one)
+ * followed by the usage of the command.
+ */
+public class CommandUsageException extends CommandMessageException {
+    private static final long serialVersionUID = 1L;
+
+    public CommandUsageException() {
+        super(null);
+    }
+
+    public CommandUsageException(String message) {
+        super(message);
+    }
+}
@@ -41,4 +41,22 @@ public @interface Completer {
      * @return A list of all aliases
      */
     String[] aliases() default {};
+
+    /**
+     * The time in milliseconds the completions of this completer are cached per sender and arguments. 0 disables
+     * caching. Completions are narrowed to the argument that is currently typed, cached or not.
+     * Completers that return a {@link java.util.concurrent.CompletableFuture} are always cached and use
+     * 2000 milliseconds when no time is set.
+     *
+     * @return The cache time in milliseconds
+     */
+    long cacheTime() default 0;
+
+    /**
+     * Whether cached completions are shared between arguments that only differ in case, e.g. "/pet give Keyle" and
+     * "/pet give keyle". Enable this only if the completions do not depend on the case of the arguments.
+     *
+     * @return true if the case of the arguments is ignored by the cache
+     */
+    boolean ignoreCase() default false;
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-only description of a registered {@link Completer} handler.
+ */
+public class CompleterDescriptor {
+    private final String name;
+    private final List<String> aliases;
+    private final CommandRegistry.MethodReference method;
+    private final Object instance;
+    private final CommandInvoker invoker;
+    private final boolean async;
+    private final long cacheTime;
+    private final boolean ignoreCase;
+    private final CommandMetrics metrics;
+
+    CompleterDescriptor(String name, List<String> aliases, long cacheTime, boolean ignoreCase, boolean async, CommandRegistry.MethodReference method, Object instance, CommandInvoker invoker) {
+        this.name = name.toLowerCase();
+        this.aliases = Collections.unmodifiableList(aliases);
+        this.method = method;
+        this.instance = instance;
+        this.invoker = invoker;
+        this.async = async;
+        if (async && cacheTime <= 0) {
+            cacheTime = CompletionCache.DEFAULT_ASYNC_CACHE_TIME;
+        }
+        this.cacheTime = cacheTime;
+        this.ignoreCase = ignoreCase;
+        this.metrics = new CommandMetrics(this.name, true);
+    }
+
+    /**
+     * Gets the dotted name of the command this completer completes
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the alternate names of the completer
+     *
+     * @return An unmodifiable list of all aliases
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * Gets the handler method
+     *
+     * @return The method
+     */
+    public Method getMethod() {
+        return method.getMethod();
+    }
+
+    /**
+     * Gets the object the handler method is called on
+     *
+     * @return The owning instance
+     */
+    public Object getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the invoker the handler method is bound to
+     *
+     * @return The invoker
+     */
+    public CommandInvoker getInvoker() {
+        return invoker;
+    }
+
+    /**
+     * Gets the invocation metrics of the completer
+     *
+     * @return The metrics
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether the completer returns its completions as a {@link CompletableFuture}
+     *
+     * @return true if the completer is asynchronous
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Gets the time in milliseconds the completions of this completer are cached
+     *
+     * @return The cache time or 0 if the completions are not cached
+     */
+    public long getCacheTime() {
+        return cacheTime;
+    }
+
+    /**
+     * Whether cached completions are shared between arguments that only differ in case
+     *
+     * @return true if the cache ignores the case of the arguments
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+}
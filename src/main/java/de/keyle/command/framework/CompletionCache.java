@@ -0,0 +1,201 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.util.StringUtil;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+class CompletionCache {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+    public static final long DEFAULT_ASYNC_CACHE_TIME = 2000;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CompletionCache.Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the cached completions for a key
+     *
+     * @param key The key
+     * @param now The current time in milliseconds
+     * @return The entry or null if there is no entry or it expired
+     */
+    synchronized Entry get(Key key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.expires <= now || entry.completions.isCompletedExceptionally())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized Entry put(Key key, CompletableFuture<List<String>> completions, long expires) {
+        Entry entry = new Entry(completions, expires);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    synchronized void invalidate(Object senderKey) {
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().sender.equals(senderKey)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Identifies the completions of a completer for a sender and the arguments before the typed one. The arguments
+     * are compared ignoring case only if the completer allows it.
+     */
+    static final class Key {
+        private final Object sender;
+        private final CompleterDescriptor completer;
+        private final String[] args;
+        private final int from;
+        private final int to;
+        private final int hash;
+
+        Key(Object sender, CompleterDescriptor completer, String[] args, int from, int to) {
+            this.sender = sender;
+            this.completer = completer;
+            this.args = args;
+            this.from = from;
+            this.to = to;
+            int hash = 31 * sender.hashCode() + completer.hashCode();
+            boolean ignoreCase = completer.isIgnoreCase();
+            for (int i = from; i < to; i++) {
+                String arg = args[i];
+                for (int j = 0; j < arg.length(); j++) {
+                    hash = 31 * hash + (ignoreCase ? Character.toLowerCase(arg.charAt(j)) : arg.charAt(j));
+                }
+                hash = 31 * hash + ' ';
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (hash != other.hash || completer != other.completer || to - from != other.to - other.from || !sender.equals(other.sender)) {
+                return false;
+            }
+            boolean ignoreCase = completer.isIgnoreCase();
+            for (int i = 0; i < to - from; i++) {
+                String arg = args[from + i];
+                String otherArg = other.args[other.from + i];
+                if (ignoreCase ? !arg.equalsIgnoreCase(otherArg) : !arg.equals(otherArg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class Entry {
+        private final CompletableFuture<List<String>> completions;
+        private final long expires;
+        private volatile Narrowed narrowed;
+
+        Entry(CompletableFuture<List<String>> completions, long expires) {
+            this.completions = completions;
+            this.expires = expires;
+        }
+
+        /**
+         * Checks if the completer has finished, successfully or not
+         *
+         * @return true if the completions are available or failed
+         */
+        boolean isDone() {
+            return completions.isDone();
+        }
+
+        /**
+         * Gets the completions that start with the given prefix. When the prefix extends the previously requested
+         * prefix only the previous result is filtered.
+         *
+         * @param prefix The argument that is currently typed
+         * @return The matching completions or null if the completions are not available yet
+         */
+        List<String> narrow(String prefix) {
+            if (!completions.isDone() || completions.isCompletedExceptionally()) {
+                return null;
+            }
+            List<String> source = completions.join();
+            if (source == null || prefix.isEmpty()) {
+                return source;
+            }
+            Narrowed last = narrowed;
+            if (last != null) {
+                if (last.prefix.equalsIgnoreCase(prefix)) {
+                    return last.completions;
+                }
+                if (StringUtil.startsWithIgnoreCase(prefix, last.prefix)) {
+                    source = last.completions;
+                }
+            }
+            List<String> result = StringUtil.copyPartialMatches(prefix, source, new ArrayList<String>());
+            narrowed = new Narrowed(prefix, result);
+            return result;
+        }
+    }
+
+    private static final class Narrowed {
+        private final String prefix;
+        private final List<String> completions;
+
+        Narrowed(String prefix, List<String> completions) {
+            this.prefix = prefix;
+            this.completions = Collections.unmodifiableList(completions);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.*;
+
+/**
+ * Timings of a single command dispatch, split into phases. Traces are only recorded while tracing is enabled.
+ *
+ * @see CommandFramework#enableTracing(long)
+ */
+public final class DispatchTrace {
+    /**
+     * The phases of a dispatch in the order they run
+     */
+    public enum Phase {
+        /**
+         * Finding the command in the command tree
+         */
+        LOOKUP,
+        /**
+         * Checking the permission, cooldown and rate limit of the sender
+         */
+        PERMISSION,
+        /**
+         * Tokenizing the arguments and validating typed parameters
+         */
+        PARSE,
+        /**
+         * Running the interceptors and the command method. Async commands only include the hand-off to the executor
+         */
+        INVOKE,
+        /**
+         * Everything after the last completed phase, e.g. rejection, usage or suggestion messages
+         */
+        RESPONSE;
+
+        private final String key = name().toLowerCase();
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long timestamp = System.currentTimeMillis();
+    private final long start = System.nanoTime();
+    private final long[] ends = new long[PHASES.length];
+    private final String label;
+    private final String[] args;
+    private String sender;
+    private String command;
+    private long total;
+
+    DispatchTrace(String label, String[] args) {
+        this.label = label;
+        this.args = args;
+    }
+
+    void mark(Phase phase) {
+        ends[phase.ordinal()] = System.nanoTime();
+    }
+
+    void setCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Ends the trace. Phases that were not reached get a duration of 0.
+     *
+     * @return The total duration in nanoseconds
+     */
+    long finish() {
+        ends[Phase.RESPONSE.ordinal()] = System.nanoTime();
+        total = ends[Phase.RESPONSE.ordinal()] - start;
+        return total;
+    }
+
+    void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Gets the time the dispatch started
+     *
+     * @return The time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the name of the sender
+     *
+     * @return The name
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Gets the label the command was used with
+     *
+     * @return The label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the arguments following the label
+     *
+     * @return A copy of the arguments
+     */
+    public String[] getArgs() {
+        return args.clone();
+    }
+
+    /**
+     * Gets the dotted name of the dispatched command
+     *
+     * @return The name or null if no command matched
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the duration of the whole dispatch
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the duration of a single phase
+     *
+     * @param phase The phase
+     * @return The duration in nanoseconds or 0 if the phase was not reached
+     */
+    public long getDuration(Phase phase) {
+        long end = ends[phase.ordinal()];
+        if (end == 0) {
+            return 0;
+        }
+        for (int i = phase.ordinal() - 1; i >= 0; i--) {
+            if (ends[i] != 0) {
+                return end - ends[i];
+            }
+        }
+        return end - start;
+    }
+
+    /**
+     * Renders traces as a JSON array. Durations are in microseconds.
+     *
+     * @param traces The traces
+     * @return The JSON document
+     */
+    public static String toJson(List<DispatchTrace> traces) {
+        StringBuilder json = new StringBuilder("[");
+        for (DispatchTrace trace : traces) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("\n  {\"timestamp\": ").append(trace.timestamp);
+            json.append(", \"sender\": ");
+            appendString(json, trace.sender);
+            json.append(", \"label\": ");
+            appendString(json, trace.label);
+            json.append(", \"args\": [");
+            for (int i = 0; i < trace.args.length; i++) {
+                if (i > 0) {
+                    json.append(", ");
+                }
+                appendString(json, trace.args[i]);
+            }
+            json.append("], \"command\": ");
+            appendString(json, trace.command);
+            json.append(", \"totalMicros\": ").append(trace.total / 1000);
+            json.append(", \"phases\": {");
+            for (Phase phase : PHASES) {
+                if (phase.ordinal() > 0) {
+                    json.append(", ");
+                }
+                json.append('"').append(phase.key).append("\": ").append(trace.getDuration(phase) / 1000);
+            }
+            json.append("}}");
+        }
+        return json.append(traces.isEmpty() ? "]" : "\n]").toString();
+    }
+
+    /**
+     * Renders traces in the folded stack format of flame graph tools (e.g. "dispatch;pet.info;invoke 1234"). Equal
+     * stacks are summed up, the values are in microseconds.
+     *
+     * @param traces The traces
+     * @return One stack per line
+     */
+    public static String toFoldedStacks(List<DispatchTrace> traces) {
+        Map<String, Long> stacks = new TreeMap<>();
+        for (DispatchTrace trace : traces) {
+            String prefix = "dispatch;" + (trace.command != null ? trace.command : "/" + trace.label) + ";";
+            for (Phase phase : PHASES) {
+                long micros = trace.getDuration(phase) / 1000;
+                if (micros > 0) {
+                    stacks.merge(prefix + phase.key, micros, Long::sum);
+                }
+            }
+        }
+        StringBuilder folded = new StringBuilder();
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            folded.append(stack.getKey()).append(' ').append(stack.getValue()).append('\n');
+        }
+        return folded.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
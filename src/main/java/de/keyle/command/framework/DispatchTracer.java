@@ -0,0 +1,81 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent slow dispatches in a fixed size ring buffer. Writers claim a slot with a single atomic
+ * increment, so concurrent dispatches never block each other. Older traces are overwritten.
+ */
+class DispatchTracer {
+    private final long threshold;
+    private final AtomicReferenceArray<DispatchTrace> buffer;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param threshold The minimum duration of a captured dispatch in nanoseconds
+     * @param capacity  The number of kept traces, rounded up to a power of two
+     */
+    DispatchTracer(long threshold, int capacity) {
+        this.threshold = threshold;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    DispatchTrace start(String label, String[] args) {
+        return new DispatchTrace(label, args);
+    }
+
+    void finish(DispatchTrace trace, CommandSender sender) {
+        if (trace.finish() < threshold) {
+            return;
+        }
+        // resolved only for captured traces, the buffer must not keep senders alive
+        trace.setSender(sender.getName());
+        buffer.set((int) (cursor.getAndIncrement() & mask), trace);
+    }
+
+    /**
+     * Gets the captured traces, oldest first. Slots that are overwritten concurrently may be missing or hold a newer trace.
+     *
+     * @return The traces
+     */
+    List<DispatchTrace> getTraces() {
+        long end = cursor.get();
+        long begin = Math.max(0, end - buffer.length());
+        List<DispatchTrace> traces = new ArrayList<>((int) (end - begin));
+        for (long i = begin; i < end; i++) {
+            DispatchTrace trace = buffer.get((int) (i & mask));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Passes exceptions to the current {@link CommandExceptionHandler}. Shared by the framework and its completers so that
+ * the handler can be replaced at any time.
+ */
+class ExceptionReporter {
+    private final Logger logger;
+    private volatile CommandExceptionHandler handler;
+
+    ExceptionReporter(Logger logger, CommandExceptionHandler handler) {
+        this.logger = logger;
+        this.handler = handler;
+    }
+
+    public CommandExceptionHandler getHandler() {
+        return handler;
+    }
+
+    public void setHandler(CommandExceptionHandler handler) {
+        this.handler = handler;
+    }
+
+    public void commandFailed(CommandDescriptor command, CommandArgs args, Throwable error) {
+        try {
+            handler.onCommandError(command, args, error);
+        } catch (Throwable t) {
+            // a broken handler must not break the dispatch
+            t.addSuppressed(error);
+            logger.log(Level.SEVERE, "The exception handler failed for command '" + command.getName() + "'", t);
+        }
+    }
+
+    public void completionFailed(String name, CommandSender sender, Throwable error) {
+        try {
+            handler.onCompletionError(name, sender, error);
+        } catch (Throwable t) {
+            t.addSuppressed(error);
+            logger.log(Level.SEVERE, "The exception handler failed for tab completion '" + name + "'", t);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginIdentifiableCommand;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Built-in diagnostic commands. They are not registered automatically, register them like any other handler:
+ * <pre>
+ * framework.registerCommands(new FrameworkCommands(framework));
+ * </pre>
+ */
+public class FrameworkCommands {
+    private static final int STATS_LINES = 10;
+    private static final int DEFAULT_TRACE_THRESHOLD = 20;
+
+    private final CommandFramework framework;
+
+    public FrameworkCommands(CommandFramework framework) {
+        this.framework = framework;
+    }
+
+    @Command(name = "cf.help", description = "Lists the commands you can use", usage = "/cf help [command] [page]")
+    public void help(CommandArgs args) {
+        int page = 1;
+        int end = args.size();
+        if (end > 0 && Parsers.isInt(args.get(end - 1))) {
+            page = args.getInt(--end, 1);
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < end; i++) {
+            if (i > 0) {
+                path.append('.');
+            }
+            path.append(args.get(i));
+        }
+        framework.sendHelp(args.getSender(), path.toString(), page);
+    }
+
+    @Command(name = "cf.stats", permission = "commandframework.stats", description = "Shows the slowest commands", usage = "/cf stats [name]")
+    public void stats(CommandArgs args, @OptionalArg String name) {
+        final List<CommandMetrics> metrics = new ArrayList<>();
+        framework.exportMetrics(new MetricsExporter() {
+            @Override
+            public void export(CommandMetrics commandMetrics) {
+                metrics.add(commandMetrics);
+            }
+        });
+        Collections.sort(metrics, new Comparator<CommandMetrics>() {
+            @Override
+            public int compare(CommandMetrics a, CommandMetrics b) {
+                return Long.compare(b.getLatency().getTotal(), a.getLatency().getTotal());
+            }
+        });
+
+        CommandSender sender = args.getSender();
+        sender.sendMessage("Command statistics (sorted by total time):");
+        int lines = 0;
+        for (CommandMetrics commandMetrics : metrics) {
+            if (name != null && !commandMetrics.getName().startsWith(name.toLowerCase())) {
+                continue;
+            }
+            if (commandMetrics.getInvocations() == 0 && commandMetrics.getPermissionDenials() == 0) {
+                continue;
+            }
+            if (lines++ == STATS_LINES) {
+                break;
+            }
+            LatencyHistogram latency = commandMetrics.getLatency();
+            sender.sendMessage(String.format("%s%s: %d calls, %d errors, %d denied, p50 %.2fms, p99 %.2fms, max %.2fms",
+                    commandMetrics.getName(),
+                    commandMetrics.isCompletion() ? " (tab)" : "",
+                    commandMetrics.getInvocations(),
+                    commandMetrics.getErrors(),
+                    commandMetrics.getPermissionDenials(),
+                    latency.getValueAtPercentile(50) / 1e6,
+                    latency.getValueAtPercentile(99) / 1e6,
+                    latency.getMax() / 1e6));
+        }
+        if (lines == 0) {
+            sender.sendMessage("No commands were executed yet");
+        }
+    }
+
+    @Command(name = "cf.trace.on", permission = "commandframework.trace", description = "Records commands that take longer than the threshold", usage = "/cf trace on [milliseconds]")
+    public void traceOn(CommandArgs args, @OptionalArg int thresholdMillis) {
+        int threshold = args.size() > 0 ? thresholdMillis : DEFAULT_TRACE_THRESHOLD;
+        framework.enableTracing(threshold);
+        args.getSender().sendMessage("Tracing commands that take at least " + threshold + "ms");
+    }
+
+    @Command(name = "cf.trace.off", permission = "commandframework.trace", description = "Stops recording commands")
+    public void traceOff(CommandArgs args) {
+        framework.disableTracing();
+        args.getSender().sendMessage("Tracing disabled, " + framework.getTraces().size() + " traces were recorded");
+    }
+
+    @Command(name = "cf.trace.dump", permission = "commandframework.trace", description = "Writes the recorded commands to the plugin folder", usage = "/cf trace dump [json|folded]", async = true)
+    public void traceDump(CommandArgs args, @OptionalArg String format) {
+        CommandSender sender = args.getSender();
+        boolean folded = "folded".equalsIgnoreCase(format);
+        if (format != null && !folded && !"json".equalsIgnoreCase(format)) {
+            throw new CommandUsageException("Unknown format " + format);
+        }
+        List<DispatchTrace> traces = framework.getTraces();
+        if (traces.isEmpty()) {
+            sender.sendMessage("No commands were recorded yet");
+            return;
+        }
+        if (!(args.getCommand() instanceof PluginIdentifiableCommand)) {
+            throw new CommandMessageException("Unable to find the plugin folder");
+        }
+        File folder = ((PluginIdentifiableCommand) args.getCommand()).getPlugin().getDataFolder();
+        File file = new File(folder, "traces-" + System.currentTimeMillis() + (folded ? ".folded" : ".json"));
+        try {
+            folder.mkdirs();
+            Files.write(file.toPath(), (folded ? DispatchTrace.toFoldedStacks(traces) : DispatchTrace.toJson(traces)).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new CommandMessageException("Unable to write " + file.getName() + ": " + e.getMessage());
+        }
+        sender.sendMessage("Wrote " + traces.size() + " traces to " + file.getPath());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+class HandlerScanner {
+    private final ClassLoader classLoader;
+    private final URL location;
+
+    HandlerScanner(ClassLoader classLoader, URL location) {
+        this.classLoader = classLoader;
+        this.location = location;
+    }
+
+    /**
+     * Finds all classes in a package (and its sub packages) that have public {@link Command} or {@link Completer}
+     * methods. Nested classes are skipped.
+     *
+     * @param packageName The package name (e.g. "de.keyle.mypet.commands")
+     * @return The handler classes sorted by name
+     * @throws IOException if the plugin jar or directory can not be read
+     */
+    public List<Class<?>> findHandlers(String packageName) throws IOException {
+        String prefix = packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+        List<String> classNames = new ArrayList<>();
+        File file;
+        try {
+            file = new File(location.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Unable to resolve " + location, e);
+        }
+        if (file.isDirectory()) {
+            Path root = file.toPath();
+            Path packageDir = root.resolve(prefix);
+            if (Files.isDirectory(packageDir)) {
+                try (Stream<Path> paths = Files.walk(packageDir)) {
+                    paths.forEach(path -> addClassName(classNames, root.relativize(path).toString().replace(File.separatorChar, '/')));
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(prefix)) {
+                        addClassName(classNames, name);
+                    }
+                }
+            }
+        }
+        classNames.sort(null);
+
+        List<Class<?>> handlers = new ArrayList<>();
+        for (String className : classNames) {
+            Class<?> clazz;
+            try {
+                clazz = Class.forName(className, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            if (isHandler(clazz)) {
+                handlers.add(clazz);
+            }
+        }
+        return handlers;
+    }
+
+    private static void addClassName(List<String> classNames, String path) {
+        if (path.endsWith(".class") && path.indexOf('$') < 0) {
+            classNames.add(path.substring(0, path.length() - 6).replace('/', '.'));
+        }
+    }
+
+    private static boolean isHandler(Class<?> clazz) {
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            return false;
+        }
+        try {
+            for (Method method : clazz.getMethods()) {
+                if (method.isAnnotationPresent(Command.class) || method.isAnnotationPresent(Completer.class)) {
+                    return true;
+                }
+            }
+        } catch (LinkageError ignored) {
+        }
+        return false;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Help pages of a {@link RegistrySnapshot}. The pages of a command path are rendered once per combination of granted
+ * permissions, so senders with the same permissions share them. A new snapshot starts with an empty cache.
+ */
+class HelpIndex {
+    static final int LINES_PER_PAGE = 8;
+    // bounds the cache when many senders have different permission combinations
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final CommandTree tree;
+    private final ConcurrentMap<String, Section> sections = new ConcurrentHashMap<>();
+
+    HelpIndex(CommandTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Gets a help page with all commands below a path that the sender is allowed to use
+     *
+     * @param sender      The sender
+     * @param permissions The permission cache
+     * @param path        The dotted command path or an empty string for all commands
+     * @param page        The page starting at 1. Pages out of range are clamped
+     * @return The lines of the page including the header
+     */
+    String[] getPage(CommandSender sender, PermissionCache permissions, String path, int page) {
+        String key = path.toLowerCase();
+        if (!key.isEmpty() && tree.get(key) == null) {
+            // not cached, the path is user input
+            return new String[]{"Unknown command /" + key.replace('.', ' ')};
+        }
+        Section section = sections.get(key);
+        if (section == null) {
+            section = new Section(tree, key);
+            Section previous = sections.putIfAbsent(key, section);
+            if (previous != null) {
+                section = previous;
+            }
+        }
+        return section.getPage(sender, permissions, page);
+    }
+
+    private static final class Section {
+        private final String path;
+        private final String[] lines;
+        // distinct restricted permissions, the granted ones form the cache key
+        private final String[] permissions;
+        private final int[] permissionIndex;
+        private final ConcurrentMap<BitSet, String[][]> pages = new ConcurrentHashMap<>();
+
+        Section(CommandTree tree, String path) {
+            this.path = path;
+            Map<CommandDescriptor, String> entries = new LinkedHashMap<>();
+            if (path.isEmpty()) {
+                for (CommandNode root : tree.getRoots()) {
+                    collect(root, root.getName(), entries);
+                }
+            } else {
+                CommandNode node = tree.get(path);
+                if (node != null) {
+                    collect(node, node.getName(), entries);
+                }
+            }
+            CommandDescriptor[] commands = entries.keySet().toArray(new CommandDescriptor[entries.size()]);
+            lines = entries.values().toArray(new String[entries.size()]);
+            List<String> distinct = new ArrayList<>();
+            permissionIndex = new int[commands.length];
+            for (int i = 0; i < commands.length; i++) {
+                String permission = commands[i].getPermission();
+                if (permission.isEmpty()) {
+                    permissionIndex[i] = -1;
+                    continue;
+                }
+                int index = distinct.indexOf(permission);
+                if (index < 0) {
+                    index = distinct.size();
+                    distinct.add(permission);
+                }
+                permissionIndex[i] = index;
+            }
+            permissions = distinct.toArray(new String[distinct.size()]);
+        }
+
+        private static void collect(CommandNode node, String root, Map<CommandDescriptor, String> entries) {
+            // commands registered under several aliases are listed once, at the first path in alphabetical order
+            if (node.command != null && !entries.containsKey(node.command)) {
+                entries.put(node.command, render(node.command, root));
+            }
+            for (CommandNode child : node.getChildren()) {
+                collect(child, root, entries);
+            }
+        }
+
+        private static String render(CommandDescriptor command, String root) {
+            String usage = command.getUsage();
+            if (usage.isEmpty()) {
+                usage = "/" + command.getName().replace('.', ' ');
+            } else {
+                int lineEnd = usage.indexOf('\n');
+                usage = (lineEnd < 0 ? usage : usage.substring(0, lineEnd)).replace("<command>", root);
+            }
+            return command.getDescription().isEmpty() ? usage : usage + " - " + command.getDescription();
+        }
+
+        String[] getPage(CommandSender sender, PermissionCache permissionCache, int page) {
+            BitSet granted = new BitSet(permissions.length);
+            for (int i = 0; i < permissions.length; i++) {
+                if (permissionCache.hasPermission(sender, permissions[i])) {
+                    granted.set(i);
+                }
+            }
+            String[][] rendered = pages.get(granted);
+            if (rendered == null) {
+                rendered = render(granted);
+                if (pages.size() >= MAX_CACHED_PAGES) {
+                    pages.clear();
+                }
+                pages.put(granted, rendered);
+            }
+            return rendered[Math.max(0, Math.min(page, rendered.length) - 1)];
+        }
+
+        private String[][] render(BitSet granted) {
+            List<String> visible = new ArrayList<>();
+            for (int i = 0; i < lines.length; i++) {
+                if (permissionIndex[i] < 0 || granted.get(permissionIndex[i])) {
+                    visible.add(lines[i]);
+                }
+            }
+            if (visible.isEmpty()) {
+                return new String[][]{{path.isEmpty() ? "There are no commands you can use" : "There are no commands for /" + path.replace('.', ' ') + " you can use"}};
+            }
+            int pageCount = (visible.size() + LINES_PER_PAGE - 1) / LINES_PER_PAGE;
+            String[][] rendered = new String[pageCount][];
+            for (int page = 0; page < pageCount; page++) {
+                int from = page * LINES_PER_PAGE;
+                int to = Math.min(from + LINES_PER_PAGE, visible.size());
+                String[] pageLines = new String[to - from + 1];
+                pageLines[0] = (path.isEmpty() ? "Help" : "Help for /" + path.replace('.', ' ')) + " (page " + (page + 1) + "/" + pageCount + "):";
+                for (int i = from; i < to; i++) {
+                    pageLines[i - from + 1] = visible.get(i);
+                }
+                rendered[page] = pageLines;
+            }
+            return rendered;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Keeps root commands in memory instead of a server command map, so commands can be dispatched without a running
+ * server, e.g. in tests, benchmarks or to replay recorded commands. Players and worlds that {@link Player} and
+ * {@link World} arguments resolve to are added with {@link #addPlayer(Player)} and {@link #addWorld(World)}:
+ * <pre>
+ * InMemoryPlatform platform = new InMemoryPlatform();
+ * CommandFramework framework = new CommandFramework(null, platform);
+ * framework.registerCommands(new PetCommands());
+ * platform.dispatch(new InMemorySender("Keyle"), "pet info");
+ * </pre>
+ */
+public class InMemoryPlatform implements Platform {
+    private static final Logger LOGGER = Logger.getLogger("CommandFramework");
+
+    private final ConcurrentMap<String, Command> commands = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Player> players = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, World> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Makes a player available as online player
+     *
+     * @param player The player
+     */
+    public void addPlayer(Player player) {
+        players.put(player.getName().toLowerCase(), player);
+    }
+
+    /**
+     * Removes an online player
+     *
+     * @param player The player
+     */
+    public void removePlayer(Player player) {
+        players.remove(player.getName().toLowerCase(), player);
+    }
+
+    /**
+     * Makes a world available as loaded world
+     *
+     * @param world The world
+     */
+    public void addWorld(World world) {
+        worlds.put(world.getName().toLowerCase(), world);
+    }
+
+    /**
+     * Removes a loaded world
+     *
+     * @param world The world
+     */
+    public void removeWorld(World world) {
+        worlds.remove(world.getName().toLowerCase(), world);
+    }
+
+    /**
+     * Dispatches a command line the same way the server would
+     *
+     * @param sender      The sender
+     * @param commandLine The command line with or without the leading slash
+     * @return false if there is no command for the label
+     */
+    public boolean dispatch(CommandSender sender, String commandLine) {
+        String[] tokens = split(commandLine);
+        Command command = commands.get(tokens[0].toLowerCase());
+        if (command == null) {
+            return false;
+        }
+        command.execute(sender, tokens[0], Arrays.copyOfRange(tokens, 1, tokens.length));
+        return true;
+    }
+
+    /**
+     * Tab completes a command line the same way the server would. The last token is the one that is completed.
+     *
+     * @param sender      The sender
+     * @param commandLine The command line with or without the leading slash
+     * @return The completions or null if there is no command for the label
+     */
+    public List<String> tabComplete(CommandSender sender, String commandLine) {
+        String[] tokens = split(commandLine);
+        Command command = commands.get(tokens[0].toLowerCase());
+        if (command == null) {
+            return null;
+        }
+        return command.tabComplete(sender, tokens[0], Arrays.copyOfRange(tokens, 1, tokens.length));
+    }
+
+    private static String[] split(String commandLine) {
+        if (commandLine.startsWith("/")) {
+            commandLine = commandLine.substring(1);
+        }
+        // keep trailing empty tokens, they are the argument that is completed
+        return commandLine.split(" ", -1);
+    }
+
+    @Override
+    public Command getCommand(String label) {
+        return commands.get(label);
+    }
+
+    @Override
+    public Command createCommand(String label, final CommandFramework framework) {
+        return new BukkitCommand(label, null, (sender, command, commandLabel, args) -> framework.handleCommand(sender, commandLabel, command, args));
+    }
+
+    @Override
+    public void registerCommands(List<Command> newCommands) {
+        for (Command command : newCommands) {
+            commands.putIfAbsent(command.getName().toLowerCase(), command);
+            for (String alias : command.getAliases()) {
+                commands.putIfAbsent(alias.toLowerCase(), command);
+            }
+        }
+    }
+
+    @Override
+    public void unregisterCommand(Command command) {
+        commands.values().removeIf(known -> known == command);
+    }
+
+    @Override
+    public Player getPlayer(String name) {
+        return players.get(name.toLowerCase());
+    }
+
+    @Override
+    public Collection<? extends Player> getOnlinePlayers() {
+        return Collections.unmodifiableCollection(new ArrayList<>(players.values()));
+    }
+
+    @Override
+    public World getWorld(String name) {
+        return worlds.get(name.toLowerCase());
+    }
+
+    @Override
+    public List<World> getWorlds() {
+        return Collections.unmodifiableList(new ArrayList<>(worlds.values()));
+    }
+
+    @Override
+    public Logger getLogger() {
+        return LOGGER;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.permissions.PermissionRemovedExecutor;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A sender without a server for the {@link InMemoryPlatform}. Received messages are recorded and permissions are
+ * granted explicitly, operators have all permissions. Permission attachments are kept in memory and override the
+ * explicit permissions, timed attachments expire after their ticks at 50 milliseconds per tick.
+ */
+public class InMemorySender implements CommandSender {
+    private final String name;
+    private final Set<String> permissions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<PermissionAttachment> attachments = new CopyOnWriteArrayList<>();
+    private final Map<PermissionAttachment, Long> expiries = new ConcurrentHashMap<>();
+    private volatile Map<String, Boolean> attached = Collections.emptyMap();
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean op;
+    private volatile boolean recordMessages = true;
+
+    public InMemorySender(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a sender with the given permissions
+     *
+     * @param name        The name
+     * @param permissions The granted permissions
+     */
+    public InMemorySender(String name, String... permissions) {
+        this(name);
+        Collections.addAll(this.permissions, permissions);
+    }
+
+    /**
+     * Grants a permission
+     *
+     * @param permission The permission
+     */
+    public void addPermission(String permission) {
+        permissions.add(permission);
+    }
+
+    /**
+     * Revokes a permission
+     *
+     * @param permission The permission
+     */
+    public void removePermission(String permission) {
+        permissions.remove(permission);
+    }
+
+    /**
+     * Gets the messages sent to this sender
+     *
+     * @return The messages, oldest first
+     */
+    public List<String> getMessages() {
+        synchronized (messages) {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    /**
+     * Removes all recorded messages
+     */
+    public void clearMessages() {
+        messages.clear();
+    }
+
+    /**
+     * Sets if messages are recorded. Disable this when many commands are dispatched and the messages are not needed.
+     *
+     * @param recordMessages true to record messages
+     */
+    public void setRecordMessages(boolean recordMessages) {
+        this.recordMessages = recordMessages;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        if (recordMessages) {
+            messages.add(message);
+        }
+    }
+
+    @Override
+    public void sendMessage(String[] messages) {
+        for (String message : messages) {
+            sendMessage(message);
+        }
+    }
+
+    /**
+     * There is no server in memory, players and worlds are looked up with the {@link InMemoryPlatform}
+     *
+     * @return Always null
+     */
+    @Override
+    public Server getServer() {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isPermissionSet(String name) {
+        return getAttachedValue(name) != null || permissions.contains(name);
+    }
+
+    @Override
+    public boolean isPermissionSet(Permission perm) {
+        return isPermissionSet(perm.getName());
+    }
+
+    @Override
+    public boolean hasPermission(String name) {
+        Boolean value = getAttachedValue(name);
+        if (value != null) {
+            return value;
+        }
+        return op || permissions.contains(name);
+    }
+
+    @Override
+    public boolean hasPermission(Permission perm) {
+        return hasPermission(perm.getName());
+    }
+
+    @Override
+    public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value) {
+        PermissionAttachment attachment = addAttachment(plugin);
+        attachment.setPermission(name, value);
+        return attachment;
+    }
+
+    @Override
+    public PermissionAttachment addAttachment(Plugin plugin) {
+        PermissionAttachment attachment = new PermissionAttachment(plugin, this);
+        attachments.add(attachment);
+        recalculatePermissions();
+        return attachment;
+    }
+
+    @Override
+    public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value, int ticks) {
+        PermissionAttachment attachment = addAttachment(plugin, ticks);
+        attachment.setPermission(name, value);
+        return attachment;
+    }
+
+    @Override
+    public PermissionAttachment addAttachment(Plugin plugin, int ticks) {
+        PermissionAttachment attachment = addAttachment(plugin);
+        expiries.put(attachment, System.currentTimeMillis() + ticks * 50L);
+        return attachment;
+    }
+
+    @Override
+    public void removeAttachment(PermissionAttachment attachment) {
+        if (attachment == null) {
+            throw new IllegalArgumentException("Attachment cannot be null");
+        }
+        if (!detach(attachment)) {
+            throw new IllegalArgumentException("Given attachment is not part of Permissible object " + this);
+        }
+    }
+
+    @Override
+    public void recalculatePermissions() {
+        Map<String, Boolean> values = new HashMap<>();
+        for (PermissionAttachment attachment : attachments) {
+            values.putAll(attachment.getPermissions());
+        }
+        attached = values;
+    }
+
+    @Override
+    public Set<PermissionAttachmentInfo> getEffectivePermissions() {
+        expireAttachments();
+        Map<String, PermissionAttachmentInfo> effective = new HashMap<>();
+        for (String permission : permissions) {
+            effective.put(permission.toLowerCase(), new PermissionAttachmentInfo(this, permission, null, true));
+        }
+        for (PermissionAttachment attachment : attachments) {
+            for (Map.Entry<String, Boolean> entry : attachment.getPermissions().entrySet()) {
+                effective.put(entry.getKey(), new PermissionAttachmentInfo(this, entry.getKey(), attachment, entry.getValue()));
+            }
+        }
+        return new HashSet<>(effective.values());
+    }
+
+    private Boolean getAttachedValue(String name) {
+        expireAttachments();
+        Map<String, Boolean> values = attached;
+        return values.isEmpty() ? null : values.get(name.toLowerCase());
+    }
+
+    private void expireAttachments() {
+        if (expiries.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<PermissionAttachment, Long> entry : expiries.entrySet()) {
+            if (entry.getValue() <= now) {
+                detach(entry.getKey());
+            }
+        }
+    }
+
+    private boolean detach(PermissionAttachment attachment) {
+        expiries.remove(attachment);
+        if (!attachments.remove(attachment)) {
+            return false;
+        }
+        PermissionRemovedExecutor callback = attachment.getRemovalCallback();
+        if (callback != null) {
+            callback.attachmentRemoved(attachment);
+        }
+        recalculatePermissions();
+        return true;
+    }
+
+    @Override
+    public boolean isOp() {
+        return op;
+    }
+
+    @Override
+    public void setOp(boolean value) {
+        op = value;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+final class Invokers {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, CommandArgs.class);
+    private static final String CONSTANT_INVOKER_NAME = ConstantHandleInvoker.class.getName();
+    // null if the class file can not be read, the invokers keep their handle in an instance field then
+    private static final byte[] CONSTANT_INVOKER = readClassFile(ConstantHandleInvoker.class);
+
+    private Invokers() {
+    }
+
+    /**
+     * Binds a handler method to its instance. A {@link MethodHandle} is used when the method can be unreflected,
+     * otherwise the invoker falls back to {@link Method#invoke(Object, Object...)}. Every method handle gets its own
+     * invoker class that keeps the handle in a static final field, so the JIT inlines the handler into the invoker.
+     *
+     * @param method The handler method
+     * @param obj    The instance the method is called on
+     * @return The bound invoker
+     */
+    public static CommandInvoker bind(Method method, Object obj) {
+        return bind(method, obj, new ParameterBinding[0]);
+    }
+
+    /**
+     * Binds a handler method with typed parameters to its instance. The accessors of all parameters are chained in
+     * front of the method handle so that primitive arguments are passed without boxing.
+     *
+     * @param method     The handler method
+     * @param obj        The instance the method is called on
+     * @param parameters The bindings of all parameters after the leading {@link CommandArgs}
+     * @return The bound invoker
+     */
+    public static CommandInvoker bind(Method method, Object obj, ParameterBinding[] parameters) {
+        MethodHandle handle = unreflect(method);
+        if (handle != null) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                handle = handle.bindTo(obj);
+            }
+            if (parameters.length > 0) {
+                MethodHandle[] accessors = new MethodHandle[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    accessors[i] = parameters[i].accessor();
+                }
+                handle = MethodHandles.filterArguments(handle, 1, accessors);
+                // every accessor reads from the same CommandArgs
+                handle = MethodHandles.permuteArguments(handle, MethodType.methodType(handle.type().returnType(), CommandArgs.class), new int[parameters.length + 1]);
+            }
+            handle = handle.asType(INVOKER_TYPE);
+            CommandInvoker invoker = defineConstantInvoker(handle);
+            return invoker != null ? invoker : new MethodHandleInvoker(handle);
+        }
+        return new ReflectiveInvoker(method, obj, parameters);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException ignored) {
+        }
+        try {
+            // handlers declared in non-public classes are still reachable once the method is accessible
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | RuntimeException ignored) {
+        }
+        return null;
+    }
+
+    private static CommandInvoker defineConstantInvoker(MethodHandle handle) {
+        if (CONSTANT_INVOKER == null) {
+            return null;
+        }
+        try {
+            Class<?> type = new ConstantLoader(handle).loadClass(CONSTANT_INVOKER_NAME);
+            return (CommandInvoker) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readClassFile(Class<?> type) {
+        String name = type.getName();
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Template of the invokers that keep their handle in a static final field. Every bound handler method gets its
+     * own copy of this class defined by a {@link ConstantLoader}, which passes the handle to the static initializer.
+     * The class is never initialized by the class loader of the framework.
+     */
+    public static final class ConstantHandleInvoker implements CommandInvoker {
+        @SuppressWarnings("unchecked")
+        private static final MethodHandle HANDLE = ((Function<Class<?>, MethodHandle>) ConstantHandleInvoker.class.getClassLoader()).apply(ConstantHandleInvoker.class);
+
+        @Override
+        public Object invoke(CommandArgs args) throws Throwable {
+            return (Object) HANDLE.invokeExact(args);
+        }
+    }
+
+    /**
+     * Defines one copy of {@link ConstantHandleInvoker} for a single method handle. All other classes are loaded by
+     * the class loader of the framework.
+     */
+    private static final class ConstantLoader extends ClassLoader implements Function<Class<?>, MethodHandle> {
+        private final MethodHandle handle;
+
+        ConstantLoader(MethodHandle handle) {
+            super(Invokers.class.getClassLoader());
+            this.handle = handle;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(CONSTANT_INVOKER_NAME)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> type = findLoadedClass(name);
+                if (type == null) {
+                    type = defineClass(name, CONSTANT_INVOKER, 0, CONSTANT_INVOKER.length, Invokers.class.getProtectionDomain());
+                }
+                return type;
+            }
+        }
+
+        @Override
+        public MethodHandle apply(Class<?> type) {
+            return handle;
+        }
+    }
+
+    static final class MethodHandleInvoker implements CommandInvoker {
+        private final MethodHandle handle;
+
+        MethodHandleInvoker(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object invoke(CommandArgs args) throws Throwable {
+            return (Object) handle.invokeExact(args);
+        }
+    }
+
+    static final class ReflectiveInvoker implements CommandInvoker {
+        private final Method method;
+        private final Object obj;
+        private final ParameterBinding[] parameters;
+
+        ReflectiveInvoker(Method method, Object obj, ParameterBinding[] parameters) {
+            this.method = method;
+            this.obj = obj;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object invoke(CommandArgs args) throws Throwable {
+            Object[] values = new Object[parameters.length + 1];
+            values[0] = args;
+            for (int i = 0; i < parameters.length; i++) {
+                values[i + 1] = parameters[i].value(args);
+            }
+            try {
+                return method.invoke(obj, values);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
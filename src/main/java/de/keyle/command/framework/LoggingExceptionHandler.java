@@ -0,0 +1,170 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The default {@link CommandExceptionHandler}. {@link CommandMessageException}s are shown to the sender, all other
+ * exceptions are logged. Repeated exceptions of the same type in the same command are only logged once per minute
+ * and the total number of logged exceptions is limited, so a completer that fails on every keystroke can not flood
+ * the console. Log records are written by a background thread.
+ */
+class LoggingExceptionHandler implements CommandExceptionHandler {
+    public static final String INTERNAL_ERROR_MESSAGE = "An internal error occurred while attempting to perform this command";
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+    private static final int MAX_REPORTS_PER_MINUTE = 20;
+    private static final int MAX_QUEUED_REPORTS = 64;
+
+    private final Logger logger;
+    private final ConcurrentMap<Key, Occurrence> occurrences = new ConcurrentHashMap<>();
+    private final RateLimiter reports = new RateLimiter(MAX_REPORTS_PER_MINUTE, TimeUnit.NANOSECONDS.toMillis(WINDOW));
+    private final ThreadPoolExecutor writer;
+
+    LoggingExceptionHandler(Logger logger) {
+        this.logger = logger;
+        writer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REPORTS), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CommandFramework-Log");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void onCommandError(CommandDescriptor command, CommandArgs args, Throwable error) {
+        CommandSender sender = args.getSender();
+        if (error instanceof CommandMessageException) {
+            if (error.getMessage() != null) {
+                sender.sendMessage(error.getMessage());
+            }
+            if (error instanceof CommandUsageException) {
+                sender.sendMessage("Usage: " + command.getUsage());
+            }
+            return;
+        }
+        sender.sendMessage(INTERNAL_ERROR_MESSAGE);
+        log("Unhandled exception executing command '", command.getName(), error);
+    }
+
+    @Override
+    public void onCompletionError(String name, CommandSender sender, Throwable error) {
+        if (!(error instanceof CommandMessageException)) {
+            log("Unhandled exception during tab completion for '", name, error);
+        }
+    }
+
+    private void log(final String context, final String name, final Throwable error) {
+        Key key = new Key(context, name, error.getClass());
+        Occurrence occurrence = occurrences.get(key);
+        if (occurrence == null) {
+            occurrence = new Occurrence();
+            Occurrence existing = occurrences.putIfAbsent(key, occurrence);
+            if (existing != null) {
+                occurrence = existing;
+            }
+        }
+        long now = System.nanoTime();
+        final int suppressed = occurrence.tryReport(now);
+        if (suppressed < 0) {
+            return;
+        }
+        if (reports.tryAcquire(this, now) > 0) {
+            occurrence.suppress();
+            return;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                String message = context + name + "'";
+                if (suppressed > 0) {
+                    message += " (" + suppressed + " similar errors were suppressed)";
+                }
+                logger.log(Level.SEVERE, message, error);
+            }
+        });
+    }
+
+    void shutdown() {
+        writer.shutdown();
+    }
+
+    private static final class Key {
+        private final String context;
+        private final String name;
+        private final Class<?> type;
+
+        Key(String context, String name, Class<?> type) {
+            this.context = context;
+            this.name = name;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return context.equals(key.context) && name.equals(key.name) && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (context.hashCode() * 31 + name.hashCode()) * 31 + type.hashCode();
+        }
+    }
+
+    private static final class Occurrence {
+        private long windowEnd;
+        private int suppressed;
+        private boolean reported;
+
+        /**
+         * Checks if an occurrence should be reported. Only the first occurrence per window is reported.
+         *
+         * @param now The current {@link System#nanoTime()}
+         * @return The number of suppressed occurrences since the last report or -1 if this occurrence is suppressed
+         */
+        synchronized int tryReport(long now) {
+            if (reported && now - windowEnd < 0) {
+                suppressed++;
+                return -1;
+            }
+            int count = suppressed;
+            suppressed = 0;
+            reported = true;
+            windowEnd = now + WINDOW;
+            return count;
+        }
+
+        synchronized void suppress() {
+            suppressed++;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+/**
+ * Receives the metrics of all registered commands and tab completers, e.g. to publish them to an external collector.
+ *
+ * @see CommandFramework#exportMetrics(MetricsExporter)
+ */
+public interface MetricsExporter {
+    /**
+     * Called once per registered command and tab completer
+     *
+     * @param metrics The metrics
+     */
+    void export(CommandMetrics metrics);
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.util.StringUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class ParameterBinding {
+    private static final MethodHandle INT_AT;
+    private static final MethodHandle LONG_AT;
+    private static final MethodHandle DOUBLE_AT;
+    private static final MethodHandle FLOAT_AT;
+    private static final MethodHandle BOOLEAN_AT;
+    private static final MethodHandle VALUE_AT;
+    private static final List<String> BOOLEAN_VALUES = Collections.unmodifiableList(Arrays.asList("true", "false"));
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            INT_AT = lookup.findStatic(ParameterValues.class, "intAt", MethodType.methodType(int.class, CommandArgs.class, int.class));
+            LONG_AT = lookup.findStatic(ParameterValues.class, "longAt", MethodType.methodType(long.class, CommandArgs.class, int.class));
+            DOUBLE_AT = lookup.findStatic(ParameterValues.class, "doubleAt", MethodType.methodType(double.class, CommandArgs.class, int.class));
+            FLOAT_AT = lookup.findStatic(ParameterValues.class, "floatAt", MethodType.methodType(float.class, CommandArgs.class, int.class));
+            BOOLEAN_AT = lookup.findStatic(ParameterValues.class, "booleanAt", MethodType.methodType(boolean.class, CommandArgs.class, int.class));
+            VALUE_AT = lookup.findStatic(ParameterValues.class, "valueAt", MethodType.methodType(Object.class, CommandArgs.class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int index;
+    private final Class<?> type;
+    private final String name;
+    private final boolean optional;
+    private final ArgumentResolver<?> resolver;
+
+    private ParameterBinding(int index, Class<?> type, String name, boolean optional, ArgumentResolver<?> resolver) {
+        this.index = index;
+        this.type = type;
+        this.name = name;
+        this.optional = optional;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Creates the bindings for all parameters of a command method after the leading {@link CommandArgs} parameter
+     *
+     * @param method    The command method
+     * @param resolvers The registered argument resolvers
+     * @return The bindings
+     * @throws IllegalArgumentException if a parameter type is not supported or optional parameters are not trailing
+     */
+    public static ParameterBinding[] bind(Method method, ArgumentResolvers resolvers) {
+        Parameter[] parameters = method.getParameters();
+        String[] names = new String[parameters.length - 1];
+        boolean[] optional = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Parameter parameter = parameters[i + 1];
+            names[i] = parameter.isNamePresent() ? parameter.getName() : null;
+            optional[i] = parameter.isAnnotationPresent(OptionalArg.class);
+        }
+        return bind(method.getParameterTypes(), names, optional, resolvers);
+    }
+
+    /**
+     * Creates the bindings for the parameters after the leading {@link CommandArgs} parameter
+     *
+     * @param types     The types of all parameters including the leading {@link CommandArgs}
+     * @param names     The names of the bound parameters, null entries are named after their type
+     * @param optional  Which of the bound parameters are optional
+     * @param resolvers The registered argument resolvers
+     * @return The bindings
+     * @throws IllegalArgumentException if a parameter type is not supported or optional parameters are not trailing
+     */
+    public static ParameterBinding[] bind(Class<?>[] types, String[] names, boolean[] optional, ArgumentResolvers resolvers) {
+        ParameterBinding[] bindings = new ParameterBinding[types.length - 1];
+        for (int i = 0; i < bindings.length; i++) {
+            Class<?> type = types[i + 1];
+            if (!optional[i] && i > 0 && bindings[i - 1].optional) {
+                throw new IllegalArgumentException("Parameter " + (i + 1) + " has to be optional because it follows an optional parameter");
+            }
+            ArgumentResolver<?> resolver = null;
+            if (!isPrimitive(type)) {
+                resolver = resolvers.get(type);
+                if (resolver == null) {
+                    throw new IllegalArgumentException("No argument resolver for " + type.getName());
+                }
+            }
+            String name = names[i] != null ? names[i] : type.getSimpleName().toLowerCase();
+            bindings[i] = new ParameterBinding(i, type, name, optional[i], resolver);
+        }
+        return bindings;
+    }
+
+    private static boolean isPrimitive(Class<?> type) {
+        return type == int.class || type == long.class || type == double.class || type == float.class || type == boolean.class;
+    }
+
+    public boolean isOptional() {
+        return optional;
+    }
+
+    public boolean isPrimitive() {
+        return resolver == null;
+    }
+
+    public String getUsage() {
+        return optional ? "[" + name + "]" : "<" + name + ">";
+    }
+
+    /**
+     * Validates an argument and stores its value, primitive values are read back by {@link ParameterValues}. Does not
+     * throw on invalid input.
+     *
+     * @param sender     The sender of the command
+     * @param input      The argument
+     * @param values     The resolved values of the current invocation
+     * @param primitives The primitive values of the current invocation
+     * @return false if the argument is invalid
+     */
+    public boolean resolve(CommandSender sender, String input, Object[] values, long[] primitives) {
+        if (type == int.class) {
+            if (!Parsers.isInt(input)) {
+                return false;
+            }
+            primitives[index] = Integer.parseInt(input);
+            return true;
+        } else if (type == long.class) {
+            if (!Parsers.isLong(input)) {
+                return false;
+            }
+            primitives[index] = Long.parseLong(input);
+            return true;
+        } else if (type == double.class || type == float.class) {
+            if (type == double.class ? !Parsers.isDouble(input) : !Parsers.isFloat(input)) {
+                return false;
+            }
+            primitives[index] = Double.doubleToRawLongBits(Double.parseDouble(input));
+            return true;
+        } else if (type == boolean.class) {
+            if (!Parsers.isBoolean(input)) {
+                return false;
+            }
+            primitives[index] = Parsers.parseBoolean(input) ? 1 : 0;
+            return true;
+        }
+        Object value = resolver.resolve(sender, input);
+        values[index] = value;
+        return value != null;
+    }
+
+    /**
+     * Checks if the parameter can offer tab completions. Only resolvers and booleans can.
+     *
+     * @return true if {@link #complete(CommandSender, String)} can return completions
+     */
+    public boolean isCompletable() {
+        return resolver != null || type == boolean.class;
+    }
+
+    public List<String> complete(CommandSender sender, String prefix) {
+        if (resolver != null) {
+            return resolver.complete(sender, prefix);
+        }
+        if (type == boolean.class) {
+            return StringUtil.copyPartialMatches(prefix, BOOLEAN_VALUES, new ArrayList<String>(2));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets a method handle of type (CommandArgs)T that reads the already validated value of this parameter
+     *
+     * @return The accessor
+     */
+    public MethodHandle accessor() {
+        MethodHandle handle;
+        if (type == int.class) {
+            handle = INT_AT;
+        } else if (type == long.class) {
+            handle = LONG_AT;
+        } else if (type == double.class) {
+            handle = DOUBLE_AT;
+        } else if (type == float.class) {
+            handle = FLOAT_AT;
+        } else if (type == boolean.class) {
+            handle = BOOLEAN_AT;
+        } else {
+            handle = VALUE_AT;
+        }
+        handle = MethodHandles.insertArguments(handle, 1, index);
+        return handle.asType(MethodType.methodType(type, CommandArgs.class));
+    }
+
+    /**
+     * Reads the already validated value of this parameter. Primitive values are boxed.
+     *
+     * @param args The arguments of the current invocation
+     * @return The value
+     */
+    public Object value(CommandArgs args) {
+        if (type == int.class) {
+            return ParameterValues.intAt(args, index);
+        } else if (type == long.class) {
+            return ParameterValues.longAt(args, index);
+        } else if (type == double.class) {
+            return ParameterValues.doubleAt(args, index);
+        } else if (type == float.class) {
+            return ParameterValues.floatAt(args, index);
+        } else if (type == boolean.class) {
+            return ParameterValues.booleanAt(args, index);
+        }
+        return ParameterValues.valueAt(args, index);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+/**
+ * Reads the values of typed command parameters that were stored when the arguments were resolved. Used by the
+ * invokers of generated {@link CommandRegistry} classes.
+ */
+public final class ParameterValues {
+    private ParameterValues() {
+    }
+
+    /**
+     * Reads an int parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value or 0 if an optional argument is missing
+     */
+    public static int intAt(CommandArgs args, int index) {
+        return args.primitives != null ? (int) args.primitives[index] : 0;
+    }
+
+    /**
+     * Reads a long parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value or 0 if an optional argument is missing
+     */
+    public static long longAt(CommandArgs args, int index) {
+        return args.primitives != null ? args.primitives[index] : 0;
+    }
+
+    /**
+     * Reads a double parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value or 0 if an optional argument is missing
+     */
+    public static double doubleAt(CommandArgs args, int index) {
+        return args.primitives != null ? Double.longBitsToDouble(args.primitives[index]) : 0;
+    }
+
+    /**
+     * Reads a float parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value or 0 if an optional argument is missing
+     */
+    public static float floatAt(CommandArgs args, int index) {
+        return args.primitives != null ? (float) Double.longBitsToDouble(args.primitives[index]) : 0;
+    }
+
+    /**
+     * Reads a boolean parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value or false if an optional argument is missing
+     */
+    public static boolean booleanAt(CommandArgs args, int index) {
+        return args.primitives != null && args.primitives[index] != 0;
+    }
+
+    /**
+     * Reads a non-primitive parameter
+     *
+     * @param args  The arguments of the current invocation
+     * @param index The index of the parameter after the leading {@link CommandArgs}
+     * @return The value resolved by the {@link ArgumentResolver} of the parameter or null if an optional argument is missing
+     */
+    public static Object valueAt(CommandArgs args, int index) {
+        return args.values != null ? args.values[index] : null;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+final class Parsers {
+    private Parsers() {
+    }
+
+    /**
+     * Checks if a string is a valid int without throwing an exception
+     *
+     * @param s The string
+     * @return true if {@link Integer#parseInt(String)} accepts the string
+     */
+    public static boolean isInt(String s) {
+        return isInteger(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks if a string is a valid long without throwing an exception
+     *
+     * @param s The string
+     * @return true if {@link Long#parseLong(String)} accepts the string
+     */
+    public static boolean isLong(String s) {
+        return isInteger(s, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static boolean isInteger(String s, long min, long max) {
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        // accumulate negatively like Long.parseLong so that the minimum value does not overflow
+        long limit = negative ? min : -max;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a string is a finite decimal number without throwing an exception. Numbers that are too large for a
+     * double, e.g. 1e400, are rejected.
+     *
+     * @param s The string
+     * @return true if {@link Double#parseDouble(String)} accepts the string and returns a finite value
+     */
+    public static boolean isDouble(String s) {
+        int length = s.length();
+        int i = 0;
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        boolean dot = false;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else if ((c == 'e' || c == 'E') && digits > 0) {
+                return isInt(s.substring(i + 1)) && !Double.isInfinite(Double.parseDouble(s));
+            } else {
+                return false;
+            }
+        }
+        // up to 308 digits can not exceed Double.MAX_VALUE
+        return digits > 0 && (digits <= 308 || !Double.isInfinite(Double.parseDouble(s)));
+    }
+
+    /**
+     * Checks if a string is a decimal number that is finite as a float without throwing an exception
+     *
+     * @param s The string
+     * @return true if {@link Float#parseFloat(String)} accepts the string and returns a finite value
+     */
+    public static boolean isFloat(String s) {
+        return isDouble(s) && !Float.isInfinite(Float.parseFloat(s));
+    }
+
+    /**
+     * Checks if a string is a boolean value (true/false, yes/no, on/off)
+     *
+     * @param s The string
+     * @return true if the string is a boolean value
+     */
+    public static boolean isBoolean(String s) {
+        return parseBoolean(s) || s.equalsIgnoreCase("false") || s.equalsIgnoreCase("no") || s.equalsIgnoreCase("off");
+    }
+
+    /**
+     * Parses a boolean value (true/false, yes/no, on/off)
+     *
+     * @param s The string
+     * @return true if the string is a true value
+     */
+    public static boolean parseBoolean(String s) {
+        return s.equalsIgnoreCase("true") || s.equalsIgnoreCase("yes") || s.equalsIgnoreCase("on");
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches permission decisions per sender for a short time. A cached decision is stored as a single long
+ * (expiry time and result bit), so cache hits do not allocate.
+ */
+class PermissionCache {
+    public static final long DEFAULT_CACHE_TIME = 1000;
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+    // decisions store their expiry relative to this origin so that the shifted value can not overflow
+    private final long origin = System.nanoTime();
+    private final ConcurrentMap<Object, SenderPermissions> senders = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL);
+    private volatile long cacheTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CACHE_TIME);
+
+    void setCacheTime(long millis) {
+        cacheTime = TimeUnit.MILLISECONDS.toNanos(millis);
+        if (millis <= 0) {
+            senders.clear();
+        }
+    }
+
+    /**
+     * Checks if a sender has a permission. Empty permissions are always granted without asking the sender.
+     *
+     * @param sender     The sender
+     * @param permission The permission
+     * @return true if the sender has the permission
+     */
+    boolean hasPermission(CommandSender sender, String permission) {
+        if (permission.isEmpty()) {
+            return true;
+        }
+        long cacheTime = this.cacheTime;
+        if (cacheTime <= 0) {
+            return sender.hasPermission(permission);
+        }
+        long now = System.nanoTime();
+        sweep(now);
+        Object key = Senders.key(sender);
+        SenderPermissions permissions = senders.get(key);
+        if (permissions != null) {
+            Long decision = permissions.decisions.get(permission);
+            if (decision != null && (decision >> 1) + origin - now > 0) {
+                return (decision & 1) == 1;
+            }
+        } else {
+            permissions = new SenderPermissions();
+            SenderPermissions existing = senders.putIfAbsent(key, permissions);
+            if (existing != null) {
+                permissions = existing;
+            }
+        }
+        boolean allowed = sender.hasPermission(permission);
+        long expires = now + cacheTime;
+        permissions.decisions.put(permission, ((expires - origin) << 1) | (allowed ? 1 : 0));
+        permissions.expires = expires;
+        return allowed;
+    }
+
+    void invalidate(Object senderKey) {
+        senders.remove(senderKey);
+    }
+
+    void clear() {
+        senders.clear();
+    }
+
+    private void sweep(long now) {
+        long next = nextSweep.get();
+        if (now - next < 0 || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            return;
+        }
+        Iterator<SenderPermissions> iterator = senders.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expires - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class SenderPermissions {
+        private final ConcurrentMap<String, Long> decisions = new ConcurrentHashMap<>();
+        private volatile long expires;
+    }
+}
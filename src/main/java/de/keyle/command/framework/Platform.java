@@ -0,0 +1,107 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Connects the framework to the environment its root commands live in. The framework itself only routes, checks
+ * and invokes commands, the platform decides where root commands are registered and how they reach
+ * {@link CommandFramework#handleCommand(org.bukkit.command.CommandSender, String, Command, String[])}.
+ *
+ * @see BukkitPlatform
+ * @see InMemoryPlatform
+ */
+public interface Platform {
+    /**
+     * Gets a root command that is already known to the platform, e.g. a command from the plugin.yml
+     *
+     * @param label The lower case label
+     * @return The command or null if there is none
+     */
+    Command getCommand(String label);
+
+    /**
+     * Creates a new root command that passes its executions to the framework
+     *
+     * @param label     The lower case label
+     * @param framework The framework the command belongs to
+     * @return The command
+     */
+    Command createCommand(String label, CommandFramework framework);
+
+    /**
+     * Makes new root commands available. Called once per registration batch.
+     *
+     * @param commands The commands created by {@link #createCommand(String, CommandFramework)}
+     */
+    void registerCommands(List<Command> commands);
+
+    /**
+     * Removes a root command that is not used anymore
+     *
+     * @param command The command created by {@link #createCommand(String, CommandFramework)}
+     */
+    void unregisterCommand(Command command);
+
+    /**
+     * Gets an online player, used to resolve {@link Player} arguments
+     *
+     * @param name The exact name of the player, case is ignored
+     * @return The player or null if no player with this name is online
+     */
+    Player getPlayer(String name);
+
+    /**
+     * Gets all online players, used to complete {@link Player} arguments
+     *
+     * @return The online players
+     */
+    Collection<? extends Player> getOnlinePlayers();
+
+    /**
+     * Gets a loaded world, used to resolve {@link World} arguments
+     *
+     * @param name The name of the world
+     * @return The world or null if there is no loaded world with this name
+     */
+    World getWorld(String name);
+
+    /**
+     * Gets all loaded worlds, used to complete {@link World} arguments
+     *
+     * @return The loaded worlds
+     */
+    List<World> getWorlds();
+
+    /**
+     * Gets the logger for errors of commands and tab completers
+     *
+     * @return The logger
+     */
+    Logger getLogger();
+}
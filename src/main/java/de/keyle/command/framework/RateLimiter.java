@@ -0,0 +1,112 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-sender token bucket implemented as a generic cell rate algorithm: the state of every sender is a single
+ * "theoretical arrival time" that is updated with a CAS, so no locks are needed. Senders whose bucket is full again
+ * carry no information and are evicted periodically.
+ */
+class RateLimiter {
+    private static final long MIN_SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+    private final ConcurrentMap<Object, AtomicLong> states = new ConcurrentHashMap<>();
+    private final long interval;
+    private final long tolerance;
+    private final long sweepInterval;
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param permits The number of executions allowed per period
+     * @param period  The period in milliseconds
+     */
+    RateLimiter(int permits, long period) {
+        this.interval = TimeUnit.MILLISECONDS.toNanos(period) / permits;
+        this.tolerance = interval * (permits - 1);
+        this.sweepInterval = Math.max(MIN_SWEEP_INTERVAL, TimeUnit.MILLISECONDS.toNanos(period));
+        this.nextSweep = new AtomicLong(System.nanoTime() + sweepInterval);
+    }
+
+    /**
+     * Takes a permit for a sender
+     *
+     * @param key The sender key
+     * @param now The current {@link System#nanoTime()}
+     * @return 0 if a permit was taken, otherwise the nanoseconds until the next permit is available
+     */
+    long tryAcquire(Object key, long now) {
+        sweep(now);
+        AtomicLong state = states.get(key);
+        if (state == null) {
+            AtomicLong created = new AtomicLong(now);
+            state = states.putIfAbsent(key, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        while (true) {
+            long arrival = state.get();
+            long base = arrival - now > 0 ? arrival : now;
+            long allowedAt = base - tolerance;
+            if (now - allowedAt < 0) {
+                return allowedAt - now;
+            }
+            if (state.compareAndSet(arrival, base + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit that was taken by {@link #tryAcquire(Object, long)} for an invocation that was rejected later
+     *
+     * @param key The sender key
+     */
+    void refund(Object key) {
+        AtomicLong state = states.get(key);
+        if (state != null) {
+            state.addAndGet(-interval);
+        }
+    }
+
+    private void sweep(long now) {
+        long next = nextSweep.get();
+        if (now - next < 0 || !nextSweep.compareAndSet(next, now + sweepInterval)) {
+            return;
+        }
+        Iterator<AtomicLong> iterator = states.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    int size() {
+        return states.size();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import java.util.*;
+
+/**
+ * Immutable state of all registered commands and tab completers. Every change builds a new snapshot that is published
+ * at once, so dispatch and tab completion on any thread see a consistent command tree without locking. A new snapshot
+ * only rebuilds the root commands that changed and shares all other roots with the snapshot it is based on.
+ */
+final class RegistrySnapshot {
+    static final RegistrySnapshot EMPTY = new RegistrySnapshot(Collections.<CommandDescriptor>emptyList(), Collections.<CompleterDescriptor>emptyList(), new CommandTree());
+
+    final List<CommandDescriptor> commands;
+    final List<CompleterDescriptor> completers;
+    final CommandTree tree;
+    final HelpIndex help;
+
+    private RegistrySnapshot(List<CommandDescriptor> commands, List<CompleterDescriptor> completers, CommandTree tree) {
+        this.commands = Collections.unmodifiableList(commands);
+        this.completers = Collections.unmodifiableList(completers);
+        this.tree = tree;
+        this.help = new HelpIndex(tree);
+    }
+
+    /**
+     * Creates a snapshot that additionally contains the given commands and tab completers
+     *
+     * @param newCommands   The commands to add
+     * @param newCompleters The tab completers to add
+     * @return The new snapshot
+     */
+    RegistrySnapshot with(List<CommandDescriptor> newCommands, List<CompleterDescriptor> newCompleters) {
+        Set<String> roots = new HashSet<>();
+        collectRoots(newCommands, newCompleters, roots);
+        CommandTree newTree = new CommandTree(tree, roots);
+        for (String root : roots) {
+            newTree.copyRoot(tree, root);
+        }
+        add(newTree, newCommands, newCompleters, roots);
+        newTree.index(roots);
+
+        List<CommandDescriptor> allCommands = new ArrayList<>(commands.size() + newCommands.size());
+        allCommands.addAll(commands);
+        allCommands.addAll(newCommands);
+        List<CompleterDescriptor> allCompleters = new ArrayList<>(completers.size() + newCompleters.size());
+        allCompleters.addAll(completers);
+        allCompleters.addAll(newCompleters);
+        return new RegistrySnapshot(allCommands, allCompleters, newTree);
+    }
+
+    /**
+     * Creates a snapshot without the commands and tab completers of handler objects
+     *
+     * @param instances The objects the commands and tab completers are in, compared by identity
+     * @return The new snapshot or this snapshot if none of the objects is registered
+     */
+    RegistrySnapshot without(Collection<?> instances) {
+        Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        removed.addAll(instances);
+        List<CommandDescriptor> remainingCommands = new ArrayList<>(commands.size());
+        List<CommandDescriptor> removedCommands = new ArrayList<>();
+        for (CommandDescriptor command : commands) {
+            (removed.contains(command.getInstance()) ? removedCommands : remainingCommands).add(command);
+        }
+        List<CompleterDescriptor> remainingCompleters = new ArrayList<>(completers.size());
+        List<CompleterDescriptor> removedCompleters = new ArrayList<>();
+        for (CompleterDescriptor completer : completers) {
+            (removed.contains(completer.getInstance()) ? removedCompleters : remainingCompleters).add(completer);
+        }
+        if (removedCommands.isEmpty() && removedCompleters.isEmpty()) {
+            return this;
+        }
+
+        // the changed roots are rebuilt from the remaining descriptors
+        Set<String> roots = new HashSet<>();
+        collectRoots(removedCommands, removedCompleters, roots);
+        CommandTree newTree = new CommandTree(tree, roots);
+        add(newTree, remainingCommands, remainingCompleters, roots);
+        newTree.index(roots);
+        return new RegistrySnapshot(remainingCommands, remainingCompleters, newTree);
+    }
+
+    /**
+     * Adds the labels of descriptors below the given roots, the other roots are shared and must not be changed.
+     * Later registrations replace earlier ones with the same label.
+     */
+    private static void add(CommandTree tree, List<CommandDescriptor> commands, List<CompleterDescriptor> completers, Set<String> roots) {
+        for (CommandDescriptor descriptor : commands) {
+            if (roots.contains(root(descriptor.getName()))) {
+                tree.getOrCreate(descriptor.getName()).command = descriptor;
+            }
+            for (String alias : descriptor.getAliases()) {
+                if (roots.contains(root(alias))) {
+                    tree.getOrCreate(alias).command = descriptor;
+                }
+            }
+        }
+        for (CompleterDescriptor descriptor : completers) {
+            if (roots.contains(root(descriptor.getName()))) {
+                tree.getOrCreate(descriptor.getName()).completer = descriptor;
+            }
+            for (String alias : descriptor.getAliases()) {
+                if (roots.contains(root(alias))) {
+                    tree.getOrCreate(alias).completer = descriptor;
+                }
+            }
+        }
+    }
+
+    private static void collectRoots(List<CommandDescriptor> commands, List<CompleterDescriptor> completers, Set<String> roots) {
+        for (CommandDescriptor descriptor : commands) {
+            roots.add(root(descriptor.getName()));
+            for (String alias : descriptor.getAliases()) {
+                roots.add(root(alias));
+            }
+        }
+        for (CompleterDescriptor descriptor : completers) {
+            roots.add(root(descriptor.getName()));
+            for (String alias : descriptor.getAliases()) {
+                roots.add(root(alias));
+            }
+        }
+    }
+
+    private static String root(String path) {
+        int dot = path.indexOf('.');
+        return (dot < 0 ? path : path.substring(0, dot)).toLowerCase();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework.processor;
+
+import de.keyle.command.framework.Command;
+import de.keyle.command.framework.CommandArgs;
+import de.keyle.command.framework.CommandRegistry;
+import de.keyle.command.framework.Completer;
+import de.keyle.command.framework.Intercept;
+import de.keyle.command.framework.OptionalArg;
+import de.keyle.command.framework.ParameterValues;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Validates {@link Command} and {@link Completer} methods at compile time and generates a {@link CommandRegistry}
+ * for every handler class. The registry passes the annotation values of the methods as literals, so handlers are
+ * registered without scanning or reading annotations and invoked without reflection.
+ * <p>
+ * The processor is picked up automatically by javac when the framework is on the compile classpath. Methods that are
+ * not public are ignored with a warning, like the framework ignores them when it scans a handler.
+ */
+public class CommandProcessor extends AbstractProcessor {
+    private static final Pattern FLAG = Pattern.compile("[^-=:\\s][^=:\\s]*(:(int|long|double|string))?", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList("int", "long", "double", "float", "boolean"));
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(Command.class.getCanonicalName(), Completer.class.getCanonicalName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, Boolean> handlers = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Command.class)) {
+            ExecutableElement method = (ExecutableElement) element;
+            boolean valid = !isPublic(method, true) || validateCommand(method, true);
+            TypeElement handler = (TypeElement) method.getEnclosingElement();
+            handlers.put(handler, valid && !Boolean.FALSE.equals(handlers.get(handler)));
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(Completer.class)) {
+            ExecutableElement method = (ExecutableElement) element;
+            boolean valid = !isPublic(method, true) || validateCompleter(method, true);
+            TypeElement handler = (TypeElement) method.getEnclosingElement();
+            handlers.put(handler, valid && !Boolean.FALSE.equals(handlers.get(handler)));
+        }
+        for (Map.Entry<TypeElement, Boolean> entry : handlers.entrySet()) {
+            if (entry.getValue() && isAccessible(entry.getKey()) && generated.add(entry.getKey().getQualifiedName().toString())) {
+                generateRegistry(entry.getKey());
+            }
+        }
+        return false;
+    }
+
+    private boolean validateCommand(ExecutableElement method, boolean report) {
+        boolean valid = true;
+        if (method.getAnnotation(Completer.class) != null) {
+            error(report, method, "A method can not be a command and a tab completer at the same time");
+            valid = false;
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (parameters.isEmpty() || !isType(parameters.get(0).asType(), CommandArgs.class)) {
+            error(report, method, "The first parameter of a command has to be CommandArgs");
+            return false;
+        }
+        Set<String> flags = new HashSet<>();
+        for (String flag : method.getAnnotation(Command.class).flags()) {
+            if (!FLAG.matcher(flag).matches()) {
+                error(report, method, "Invalid flag \"" + flag + "\". Use \"name\" or \"name:type\" with type int, long, double or string");
+                valid = false;
+            } else if (!flags.add(flag.split(":")[0].toLowerCase())) {
+                error(report, method, "Duplicate flag \"" + flag + "\"");
+                valid = false;
+            }
+        }
+        boolean optional = false;
+        for (int i = 1; i < parameters.size(); i++) {
+            VariableElement parameter = parameters.get(i);
+            TypeMirror type = parameter.asType();
+            if (type.getKind().isPrimitive() && !PRIMITIVES.contains(type.toString())) {
+                error(report, parameter, "Unsupported parameter type " + type + ". Use int, long, double, float, boolean or a type with an ArgumentResolver");
+                valid = false;
+            }
+            if (parameter.getAnnotation(OptionalArg.class) != null) {
+                optional = true;
+            } else if (optional) {
+                error(report, parameter, "Parameter " + (i + 1) + " has to be optional because it follows an optional parameter");
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private boolean validateCompleter(ExecutableElement method, boolean report) {
+        boolean valid = true;
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (parameters.size() != 1 || !isType(parameters.get(0).asType(), CommandArgs.class)) {
+            error(report, method, "A tab completer needs exactly one parameter of type CommandArgs");
+            valid = false;
+        }
+        TypeMirror returnType = processingEnv.getTypeUtils().erasure(method.getReturnType());
+        if (!isType(returnType, List.class) && !isType(returnType, java.util.concurrent.CompletableFuture.class)) {
+            error(report, method, "A tab completer has to return List<String> or CompletableFuture<List<String>>");
+            valid = false;
+        }
+        return valid;
+    }
+
+    private boolean isPublic(ExecutableElement method, boolean report) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+            if (report) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Command and tab completer methods have to be public, " + method.getSimpleName() + " is ignored", method);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement enclosing = (TypeElement) element;
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE) || enclosing.getNestingKind() == NestingKind.LOCAL || enclosing.getNestingKind() == NestingKind.ANONYMOUS) {
+                // the framework falls back to scanning the handler at runtime
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "No command registry generated for " + type + " because it is not accessible from its package", type);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isType(TypeMirror type, Class<?> clazz) {
+        return type.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().erasure(type).toString().equals(clazz.getCanonicalName());
+    }
+
+    private void generateRegistry(TypeElement handler) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(handler).getQualifiedName().toString();
+        String registryName = registryName(handler);
+        String handlerName = processingEnv.getTypeUtils().erasure(handler.asType()).toString();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// generated by ").append(CommandProcessor.class.getName()).append("\n");
+        source.append("public final class ").append(registryName).append(" implements ").append(CommandRegistry.class.getName()).append('<').append(handlerName).append("> {\n");
+        source.append("    @Override\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public void register(final ").append(handlerName).append(" handler, ").append(CommandRegistry.class.getName()).append(".Registrar registrar) {\n");
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(handler))) {
+            AnnotationMirror command = getAnnotation(method, Command.class);
+            AnnotationMirror completer = getAnnotation(method, Completer.class);
+            if (command == null && completer == null || !isPublic(method, false)) {
+                continue;
+            }
+            // inherited methods may come from classes that were not validated by this processor
+            if (command != null ? !validateCommand(method, false) : !validateCompleter(method, false)) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = method.getParameters();
+            source.append("        registrar.").append(command != null ? "command" : "completer").append("(new ");
+            source.append(CommandRegistry.MethodReference.class.getCanonicalName()).append('(').append(handlerName).append(".class, \"").append(method.getSimpleName()).append('"');
+            for (VariableElement parameter : parameters) {
+                source.append(", ").append(processingEnv.getTypeUtils().erasure(parameter.asType())).append(".class");
+            }
+            source.append("),\n                ");
+            if (command != null) {
+                source.append(annotationLiteral(command, "                ")).append(",\n                ");
+                source.append(annotationLiteral(getAnnotation(method.getEnclosingElement(), Intercept.class), "                ")).append(",\n                ");
+                source.append(annotationLiteral(getAnnotation(method, Intercept.class), "                ")).append(",\n                ");
+                StringBuilder names = new StringBuilder();
+                StringBuilder optional = new StringBuilder();
+                for (int i = 1; i < parameters.size(); i++) {
+                    names.append(i > 1 ? ", " : "").append(processingEnv.getElementUtils().getConstantExpression(parameters.get(i).getSimpleName().toString()));
+                    optional.append(i > 1 ? ", " : "").append(parameters.get(i).getAnnotation(OptionalArg.class) != null);
+                }
+                source.append("new java.lang.String[] {").append(names).append("}, new boolean[] {").append(optional).append("},\n                ");
+            } else {
+                source.append(annotationLiteral(completer, "                ")).append(",\n                ");
+                source.append(isType(processingEnv.getTypeUtils().erasure(method.getReturnType()), java.util.concurrent.CompletableFuture.class)).append(",\n                ");
+            }
+            source.append("args -> ");
+            StringBuilder call = new StringBuilder();
+            call.append(method.getModifiers().contains(Modifier.STATIC) ? handlerName : "handler").append('.').append(method.getSimpleName()).append("(args");
+            for (int i = 1; i < parameters.size(); i++) {
+                call.append(", ").append(parameterValue(parameters.get(i).asType(), i - 1));
+            }
+            call.append(')');
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                source.append("{\n            ").append(call).append(";\n            return null;\n        });\n");
+            } else {
+                source.append(call).append(");\n");
+            }
+        }
+        source.append("    }\n");
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? registryName : packageName + "." + registryName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, handler);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException e) {
+            error(handler, "Unable to write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    private AnnotationMirror getAnnotation(Element element, Class<?> annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (isType(mirror.getAnnotationType(), annotation)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates an expression that implements the annotation with the values of the mirror, including the defaults
+     */
+    private String annotationLiteral(AnnotationMirror annotation, String indent) {
+        if (annotation == null) {
+            return "null";
+        }
+        String type = processingEnv.getTypeUtils().erasure(annotation.getAnnotationType()).toString();
+        StringBuilder literal = new StringBuilder("new ").append(type).append("() {\n");
+        literal.append(indent).append("    public java.lang.Class<? extends java.lang.annotation.Annotation> annotationType() {\n");
+        literal.append(indent).append("        return ").append(type).append(".class;\n");
+        literal.append(indent).append("    }\n");
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            TypeMirror returnType = entry.getKey().getReturnType();
+            literal.append(indent).append("    public ").append(returnType).append(' ').append(entry.getKey().getSimpleName()).append("() {\n");
+            literal.append(indent).append("        return ").append(valueLiteral(returnType, entry.getValue(), indent + "        ")).append(";\n");
+            literal.append(indent).append("    }\n");
+        }
+        return literal.append(indent).append('}').toString();
+    }
+
+    private String valueLiteral(TypeMirror type, AnnotationValue value, String indent) {
+        Object object = value.getValue();
+        if (type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            StringBuilder literal = new StringBuilder("new ").append(processingEnv.getTypeUtils().erasure(componentType)).append("[] {");
+            List<?> elements = (List<?>) object;
+            for (int i = 0; i < elements.size(); i++) {
+                literal.append(i > 0 ? ", " : "").append(valueLiteral(componentType, (AnnotationValue) elements.get(i), indent));
+            }
+            return literal.append('}').toString();
+        } else if (object instanceof TypeMirror) {
+            return processingEnv.getTypeUtils().erasure((TypeMirror) object) + ".class";
+        } else if (object instanceof VariableElement) {
+            VariableElement constant = (VariableElement) object;
+            return processingEnv.getTypeUtils().erasure(constant.asType()) + "." + constant.getSimpleName();
+        } else if (object instanceof AnnotationMirror) {
+            return annotationLiteral((AnnotationMirror) object, indent);
+        }
+        return processingEnv.getElementUtils().getConstantExpression(object);
+    }
+
+    private String parameterValue(TypeMirror type, int index) {
+        String values = ParameterValues.class.getName();
+        if (type.getKind().isPrimitive()) {
+            return values + "." + type.toString() + "At(args, " + index + ")";
+        }
+        return "(" + processingEnv.getTypeUtils().erasure(type) + ") " + values + ".valueAt(args, " + index + ")";
+    }
+
+    private static String registryName(TypeElement handler) {
+        StringBuilder name = new StringBuilder(handler.getSimpleName());
+        for (Element element = handler.getEnclosingElement(); element instanceof TypeElement; element = element.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, element.getSimpleName());
+        }
+        return name.append(CommandRegistry.SUFFIX).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void error(boolean report, Element element, String message) {
+        if (report) {
+            error(element, message);
+        }
+    }
+}
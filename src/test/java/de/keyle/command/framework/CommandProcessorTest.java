@@ -0,0 +1,164 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import de.keyle.command.framework.processor.CommandProcessor;
+import org.bukkit.command.CommandSender;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles a handler with and without the {@link CommandProcessor} and checks that the generated registry registers
+ * and dispatches the handler exactly like the reflective scan.
+ */
+public class CommandProcessorTest {
+    private static final String HANDLER = "sample.PetCommands";
+    private static final String SOURCE = "package sample;\n" +
+            "\n" +
+            "import de.keyle.command.framework.*;\n" +
+            "import java.util.*;\n" +
+            "\n" +
+            "public class PetCommands {\n" +
+            "    @Command(name = \"pet.give\", permission = \"pet.give\", aliases = {\"gift\"}, description = \"Gives food\", cooldown = 1000)\n" +
+            "    public void give(CommandArgs args, int amount, @OptionalArg String food) {\n" +
+            "        args.getSender().sendMessage(\"gave \" + amount + \" \" + food);\n" +
+            "    }\n" +
+            "\n" +
+            "    @Command(name = \"pet.info\", usage = \"/pet info\")\n" +
+            "    public void info(CommandArgs args) {\n" +
+            "        args.getSender().sendMessage(\"info \" + args.getArgs());\n" +
+            "    }\n" +
+            "\n" +
+            "    @Command(name = \"pet.name\", flags = {\"s\", \"color:string\"})\n" +
+            "    public void name(CommandArgs args, String name) {\n" +
+            "        args.getSender().sendMessage(name + \" \" + args.hasFlag(\"s\") + \" \" + args.getFlag(\"color\"));\n" +
+            "    }\n" +
+            "\n" +
+            "    @Completer(name = \"pet.give\", cacheTime = 0)\n" +
+            "    public List<String> completeGive(CommandArgs args) {\n" +
+            "        return Arrays.asList(\"1\", \"5\", \"10\");\n" +
+            "    }\n" +
+            "}\n";
+    private static final String[] COMMANDS = {
+            "pet give 5 fish", "pet give 6", "pet give x", "gift 2 bone", "pet info a b", "pet name \"Mr Paws\" -s --color red",
+            "pet name", "pet unknown"
+    };
+    private static final String[] COMPLETIONS = {"pet ", "pet give ", "pet give 1", "pet na"};
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatedRegistryMatchesReflectiveRegistration() throws Exception {
+        File source = folder.newFile("PetCommands.java");
+        Files.write(source.toPath(), SOURCE.getBytes("UTF-8"));
+        File generated = compile(source, "generated", true);
+        File reflective = compile(source, "reflective", false);
+        assertTrue(new File(generated, "sample/PetCommands" + CommandRegistry.SUFFIX + ".class").isFile());
+        assertFalse(new File(reflective, "sample/PetCommands" + CommandRegistry.SUFFIX + ".class").exists());
+
+        try (URLClassLoader generatedLoader = load(generated); URLClassLoader reflectiveLoader = load(reflective)) {
+            Run expected = run(reflectiveLoader, false);
+            Run actual = run(generatedLoader, true);
+            assertEquals(expected.commands, actual.commands);
+            assertEquals(expected.completers, actual.completers);
+            assertEquals(expected.messages, actual.messages);
+            assertEquals(expected.completions, actual.completions);
+        }
+    }
+
+    private File compile(File source, String name, boolean process) throws IOException, URISyntaxException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("The tests have to run on a JDK", compiler);
+        File output = folder.newFolder(name);
+        List<String> options = new ArrayList<>(Arrays.asList("-d", output.getPath(), "-classpath", classPath(), "-parameters"));
+        if (!process) {
+            options.add("-proc:none");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, Locale.ROOT, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null, files.getJavaFileObjects(source));
+            if (process) {
+                task.setProcessors(Collections.singletonList(new CommandProcessor()));
+            }
+            assertTrue("Compilation failed: " + diagnostics.getDiagnostics(), task.call());
+        }
+        return output;
+    }
+
+    private static String classPath() throws URISyntaxException {
+        return new File(CommandFramework.class.getProtectionDomain().getCodeSource().getLocation().toURI()) + File.pathSeparator +
+                new File(CommandSender.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private static URLClassLoader load(File classes) throws IOException {
+        return new URLClassLoader(new URL[]{classes.toURI().toURL()}, CommandProcessorTest.class.getClassLoader());
+    }
+
+    private static Run run(ClassLoader loader, boolean generated) throws Exception {
+        Object handler = Class.forName(HANDLER, true, loader).getConstructor().newInstance();
+        InMemoryPlatform platform = new InMemoryPlatform();
+        CommandFramework framework = new CommandFramework(null, platform);
+        try {
+            framework.registerCommands(handler);
+            Run run = new Run();
+            for (CommandDescriptor command : framework.getCommands()) {
+                assertEquals(generated, !command.getInvoker().getClass().getName().startsWith(Invokers.class.getName()));
+                run.commands.add(Arrays.asList(command.getName(), command.getAliases(), command.getPermission(), command.getDescription(),
+                        command.getUsage(), command.getMethod().toGenericString(), command.isAsync()));
+            }
+            for (CompleterDescriptor completer : framework.getCompleters()) {
+                run.completers.add(Arrays.asList(completer.getName(), completer.getMethod().toGenericString(), completer.getCacheTime()));
+            }
+            InMemorySender sender = new InMemorySender("tester", "pet.give");
+            for (String command : COMMANDS) {
+                platform.dispatch(sender, command);
+                run.messages.add(command + " -> " + sender.getMessages());
+                sender.clearMessages();
+            }
+            for (String commandLine : COMPLETIONS) {
+                run.completions.add(commandLine + " -> " + platform.tabComplete(sender, commandLine));
+            }
+            return run;
+        } finally {
+            framework.shutdown();
+        }
+    }
+
+    private static class Run {
+        final Set<List<?>> commands = new HashSet<>();
+        final Set<List<?>> completers = new HashSet<>();
+        final List<String> messages = new ArrayList<>();
+        final List<String> completions = new ArrayList<>();
+    }
+}
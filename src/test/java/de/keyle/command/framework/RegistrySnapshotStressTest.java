@@ -0,0 +1,303 @@
+/*
+ * This file is part of Keyle's CommandFramework
+ *
+ * Copyright (C) 2011-2013 Keyle
+ * Keyle's CommandFramework is licensed under the GNU Lesser General Public License.
+ *
+ * Keyle's CommandFramework is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Keyle's CommandFramework is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.keyle.command.framework;
+
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.SimplePluginManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Registers and unregisters handlers while other threads dispatch and tab complete. Every reader has to see each
+ * handler completely or not at all, and the commands of other handlers have to stay available.
+ */
+public class RegistrySnapshotStressTest {
+    private static final int CYCLES = 2000;
+    private static final Logger LOGGER = Logger.getLogger("RegistrySnapshotStressTest");
+
+    private CommandFramework framework;
+    private org.bukkit.command.Command baseCommand;
+    private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+    public static class StableCommands {
+        @Command(name = "base.ping")
+        public void ping(CommandArgs args) {
+            args.getSender().sendMessage("pong");
+        }
+
+        @Command(name = "base.echo")
+        public void echo(CommandArgs args) {
+            args.getSender().sendMessage(args.getArgs().get(0));
+        }
+    }
+
+    public static class AlphaCommands {
+        @Command(name = "alpha.one")
+        public void one(CommandArgs args) {
+            args.getSender().sendMessage("alpha");
+        }
+
+        @Command(name = "alpha.two")
+        public void two(CommandArgs args) {
+        }
+
+        @Completer(name = "alpha.one")
+        public List<String> completeOne(CommandArgs args) {
+            return Collections.singletonList("x");
+        }
+    }
+
+    public static class BetaCommands {
+        @Command(name = "beta.one")
+        public void one(CommandArgs args) {
+            args.getSender().sendMessage("beta");
+        }
+
+        @Command(name = "beta.two")
+        public void two(CommandArgs args) {
+        }
+
+        @Completer(name = "beta.one")
+        public List<String> completeOne(CommandArgs args) {
+            return Collections.singletonList("y");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SimpleCommandMap[] commandMap = new SimpleCommandMap[1];
+        SimplePluginManager[] pluginManager = new SimplePluginManager[1];
+        Server server = stub(Server.class, (method, args) -> {
+            switch (method) {
+                case "getPluginManager":
+                    return pluginManager[0];
+                case "getLogger":
+                    return LOGGER;
+            }
+            return null;
+        });
+        commandMap[0] = new SimpleCommandMap(server);
+        pluginManager[0] = new SimplePluginManager(server, commandMap[0]);
+        Plugin plugin = stub(Plugin.class, (method, args) -> {
+            switch (method) {
+                case "getServer":
+                    return server;
+                case "getName":
+                    return "Stress";
+                case "isEnabled":
+                    return true;
+                case "getLogger":
+                    return LOGGER;
+                case "getDescription":
+                    return new PluginDescriptionFile("Stress", "1.0", RegistrySnapshotStressTest.class.getName());
+            }
+            return null;
+        });
+        framework = new CommandFramework(plugin) {
+            @Override
+            public void printMessage(String message) {
+                errors.add(new AssertionError(message));
+            }
+        };
+        framework.setExceptionHandler(new CommandExceptionHandler() {
+            @Override
+            public void onCommandError(CommandDescriptor command, CommandArgs args, Throwable error) {
+                errors.add(error);
+            }
+
+            @Override
+            public void onCompletionError(String name, CommandSender sender, Throwable error) {
+                errors.add(error);
+            }
+        });
+        framework.registerCommands(new StableCommands());
+        baseCommand = commandMap[0].getCommand("base");
+    }
+
+    @After
+    public void tearDown() {
+        framework.shutdown();
+    }
+
+    @Test
+    public void readersNeverSeeTornSnapshots() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = Arrays.asList(
+                    executor.submit(churn(new AlphaCommands(), start)),
+                    executor.submit(churn(new BetaCommands(), start)));
+            List<Future<?>> readers = Arrays.asList(
+                    executor.submit(dispatchStable(writing, start)),
+                    executor.submit(dispatchChurning(writing, start)),
+                    executor.submit(inspectSnapshots(writing, start)));
+            start.countDown();
+            try {
+                for (Future<?> writer : writers) {
+                    writer.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                writing.set(false);
+            }
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue("Unexpected errors: " + errors, errors.isEmpty());
+        assertEquals(2, framework.getCommands().size());
+        assertTrue(framework.getCompleters().isEmpty());
+    }
+
+    @Test
+    public void registeringAgainReplacesCommands() {
+        AlphaCommands alpha = new AlphaCommands();
+        framework.registerCommands(alpha);
+        framework.registerCommands(alpha);
+        framework.registerCommands(Arrays.asList(alpha, alpha));
+        assertEquals(4, framework.getCommands().size());
+        assertEquals(1, framework.getCompleters().size());
+
+        RecordingSender sender = new RecordingSender();
+        framework.handleCommand(sender.sender, "alpha", null, new String[]{"one"});
+        assertEquals(Collections.singletonList("alpha"), sender.messages);
+
+        framework.unregisterCommands(alpha);
+        assertEquals(2, framework.getCommands().size());
+        assertNull(framework.getCommand("alpha.one"));
+    }
+
+    private Callable<Void> churn(Object handler, CountDownLatch start) {
+        return () -> {
+            start.await();
+            for (int i = 0; i < CYCLES; i++) {
+                framework.registerCommands(handler);
+                framework.unregisterCommands(handler);
+            }
+            return null;
+        };
+    }
+
+    private Callable<Void> dispatchStable(AtomicBoolean writing, CountDownLatch start) {
+        return () -> {
+            RecordingSender sender = new RecordingSender();
+            start.await();
+            for (int i = 0; writing.get(); i++) {
+                framework.handleCommand(sender.sender, "base", baseCommand, new String[]{"ping"});
+                framework.handleCommand(sender.sender, "base", baseCommand, new String[]{"echo", String.valueOf(i)});
+                assertEquals(Collections.singletonList("ping"), baseCommand.tabComplete(sender.sender, "base", new String[]{"p"}));
+                assertEquals(Arrays.asList("pong", String.valueOf(i)), sender.messages);
+                sender.messages.clear();
+            }
+            return null;
+        };
+    }
+
+    private Callable<Void> dispatchChurning(AtomicBoolean writing, CountDownLatch start) {
+        return () -> {
+            RecordingSender sender = new RecordingSender();
+            start.await();
+            while (writing.get()) {
+                framework.handleCommand(sender.sender, "alpha", null, new String[]{"one"});
+                framework.handleCommand(sender.sender, "beta", null, new String[]{"one"});
+                for (String message : sender.messages) {
+                    assertTrue("Unexpected message " + message, message.equals("alpha") || message.equals("beta"));
+                }
+                sender.messages.clear();
+            }
+            return null;
+        };
+    }
+
+    private Callable<Void> inspectSnapshots(AtomicBoolean writing, CountDownLatch start) {
+        return () -> {
+            start.await();
+            while (writing.get()) {
+                Map<String, Integer> commands = new HashMap<>();
+                for (CommandDescriptor command : framework.getCommands()) {
+                    commands.merge(command.getName().substring(0, command.getName().indexOf('.')), 1, Integer::sum);
+                }
+                assertEquals(Integer.valueOf(2), commands.get("base"));
+                assertTrue("Torn snapshot " + commands, commands.getOrDefault("alpha", 2) == 2 && commands.getOrDefault("beta", 2) == 2);
+
+                // each call reads its own snapshot, so commands and completers can not be compared with each other
+                Set<String> completers = new HashSet<>();
+                for (CompleterDescriptor completer : framework.getCompleters()) {
+                    assertTrue("Duplicate completer " + completer.getName(), completers.add(completer.getName()));
+                }
+            }
+            return null;
+        };
+    }
+
+    private static class RecordingSender {
+        final List<String> messages = new ArrayList<>();
+        final CommandSender sender = stub(CommandSender.class, (method, args) -> {
+            switch (method) {
+                case "sendMessage":
+                    if (args[0] instanceof String) {
+                        messages.add((String) args[0]);
+                    } else {
+                        messages.addAll(Arrays.asList((String[]) args[0]));
+                    }
+                    return null;
+                case "getName":
+                    return "stress";
+                case "hasPermission":
+                case "isOp":
+                    return true;
+            }
+            return null;
+        });
+    }
+
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    private static <T> T stub(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object result = answer.answer(method.getName(), args);
+            if (result == null && method.getReturnType() == boolean.class) {
+                return false;
+            }
+            if (result == null && method.getReturnType() == int.class) {
+                return 0;
+            }
+            return result;
+        }));
+    }
+}